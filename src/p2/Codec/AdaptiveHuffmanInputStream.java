@@ -0,0 +1,133 @@
+package p2.Codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decompresses the bytes written by AdaptiveHuffmanOutputStream.
+ *
+ * The decoder keeps the same AdaptiveHuffmanTree as the encoder, walking it one
+ * bit at a time and updating it after every symbol. It only reads from the
+ * underlying stream what is available, so the bytes before a flush() of the
+ * writer can be read without waiting for more.
+ */
+public class AdaptiveHuffmanInputStream extends InputStream {
+
+	private final InputStream in;
+	private final AdaptiveHuffmanTree tree = new AdaptiveHuffmanTree(AdaptiveHuffmanOutputStream.ALPHABET_SIZE);
+
+	private final byte[] buffer;
+	private int position;
+	private int limit;
+	private int bitBuffer; // bits of the current byte not used yet
+	private int bitCount;
+	private boolean ended;
+
+	public AdaptiveHuffmanInputStream(InputStream in, int bufferSize) {
+		if (in == null)
+			throw new IllegalArgumentException("Stream cannot be null");
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("Buffer size must be at least 1");
+		this.in = in;
+		this.buffer = new byte[bufferSize];
+	}
+
+	public AdaptiveHuffmanInputStream(InputStream in) {
+		this(in, 8192);
+	}
+
+	/**
+	 * @return The next byte, or -1 after the END code
+	 * @throws IOException if the stream ends before the END code
+	 */
+	@Override
+	public int read() throws IOException {
+		int s;
+		do {
+			s = next();
+		} while (s == AdaptiveHuffmanOutputStream.FLUSH);
+		return s;
+	}
+
+	/**
+	 * Reads up to len bytes, stopping early at a point where the writer flushed
+	 * if no more input is available yet.
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length)
+			throw new IndexOutOfBoundsException("Range is outside of the array");
+		if (len == 0)
+			return 0;
+
+		int count = 0;
+		while (count < len) {
+			int s = next();
+			if (s < 0)
+				break;
+			if (s == AdaptiveHuffmanOutputStream.FLUSH) {
+				/* Do not wait for bytes the writer may not have sent yet */
+				if (count > 0 && position == limit && in.available() == 0)
+					break;
+				continue;
+			}
+			b[off + count++] = (byte) s;
+		}
+		return count == 0 ? -1 : count;
+	}
+
+	/* Next byte or FLUSH, -1 after the END code */
+	private int next() throws IOException {
+		if (ended)
+			return -1;
+		int s = readSymbol();
+		if (s == AdaptiveHuffmanOutputStream.END) {
+			ended = true;
+			return -1;
+		}
+		if (s == AdaptiveHuffmanOutputStream.FLUSH)
+			bitCount = 0; // the writer padded the rest of the byte
+		return s;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private int readSymbol() throws IOException {
+		int node = tree.root();
+		while (!tree.isLeaf(node))
+			node = tree.child(node, readBit());
+
+		int s;
+		if (tree.isNYT(node)) {
+			s = 0;
+			for (int i = 0; i < tree.symbolBits(); i++)
+				s = (s << 1) | readBit();
+			if (s >= tree.alphabetSize() || tree.contains(s))
+				throw new IOException("Compressed data is corrupt");
+		} else {
+			s = tree.symbol(node);
+		}
+		tree.update(s);
+		return s;
+	}
+
+	private int readBit() throws IOException {
+		if (bitCount == 0) {
+			while (position == limit) {
+				limit = in.read(buffer, 0, buffer.length);
+				position = 0;
+				if (limit < 0) {
+					limit = 0;
+					throw new EOFException("Compressed data is truncated");
+				}
+			}
+			bitBuffer = buffer[position++] & 0xFF;
+			bitCount = 8;
+		}
+		return bitBuffer >>> --bitCount & 1;
+	}
+}
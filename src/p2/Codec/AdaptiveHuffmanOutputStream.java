@@ -0,0 +1,123 @@
+package p2.Codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses bytes in a single pass with adaptive Huffman codes, for streams
+ * whose length or contents are not known in advance (sockets, pipes).
+ *
+ * Every byte is written with its code in the AdaptiveHuffmanTree built from the
+ * bytes before it, so there is no frequency count, no header and no second pass.
+ * Whole bytes of output are kept in a small buffer; flush() pads the last one
+ * after a FLUSH code and hands everything to the underlying stream, so the
+ * reader can decode all the bytes written so far. close() ends the data with
+ * the END code.
+ *
+ * The bytes can be read back with AdaptiveHuffmanInputStream.
+ */
+public class AdaptiveHuffmanOutputStream extends OutputStream {
+
+	/* Codes past the byte values, only written by the stream itself */
+	static final int END = 256;
+	static final int FLUSH = 257;
+	static final int ALPHABET_SIZE = 258;
+
+	private final OutputStream out;
+	private final AdaptiveHuffmanTree tree = new AdaptiveHuffmanTree(ALPHABET_SIZE);
+	private final int[] path = new int[tree.maxDepth()];
+
+	private final byte[] buffer;
+	private int position;
+	private long bitBuffer;
+	private int bitCount;
+	private boolean closed;
+
+	public AdaptiveHuffmanOutputStream(OutputStream out, int bufferSize) {
+		if (out == null)
+			throw new IllegalArgumentException("Stream cannot be null");
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("Buffer size must be at least 1");
+		this.out = out;
+		this.buffer = new byte[bufferSize];
+	}
+
+	public AdaptiveHuffmanOutputStream(OutputStream out) {
+		this(out, 8192);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (closed)
+			throw new IOException("Stream closed");
+		writeSymbol(b & 0xFF);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length)
+			throw new IndexOutOfBoundsException("Range is outside of the array");
+		if (closed)
+			throw new IOException("Stream closed");
+		for (int i = off; i < off + len; i++)
+			writeSymbol(b[i] & 0xFF);
+	}
+
+	/**
+	 * Writes a FLUSH code and the padding to the next byte, then sends every
+	 * byte written so far to the underlying stream.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (closed)
+			throw new IOException("Stream closed");
+		writeSymbol(FLUSH);
+		pad();
+		drain();
+		out.flush();
+	}
+
+	/**
+	 * Writes the END code and closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		writeSymbol(END);
+		pad();
+		drain();
+		closed = true;
+		out.close();
+	}
+
+	private void writeSymbol(int s) throws IOException {
+		int length = tree.code(s, path);
+		for (int i = 0; i < length; i++)
+			writeBits(path[i], 1);
+		if (!tree.contains(s))
+			writeBits(s, tree.symbolBits());
+		tree.update(s);
+	}
+
+	private void writeBits(int bits, int length) throws IOException {
+		bitBuffer = (bitBuffer << length) | bits;
+		bitCount += length;
+		while (bitCount >= 8) {
+			bitCount -= 8;
+			if (position == buffer.length)
+				drain();
+			buffer[position++] = (byte) (bitBuffer >>> bitCount);
+		}
+	}
+
+	private void pad() throws IOException {
+		if (bitCount > 0)
+			writeBits(0, 8 - bitCount);
+	}
+
+	private void drain() throws IOException {
+		out.write(buffer, 0, position);
+		position = 0;
+	}
+}
@@ -0,0 +1,204 @@
+package p2.Codec;
+
+/**
+ * Huffman tree that is updated after every symbol, following the FGK algorithm
+ * (Faller, Gallager and Knuth), so the encoder and the decoder can build the
+ * same codes while the data goes by instead of counting it first.
+ *
+ * The tree is kept in flat arrays indexed by node number. Numbers go up with
+ * the weight of the nodes (the sibling property), so all the nodes of one weight
+ * form a block of consecutive numbers and the root has the highest number.
+ * Incrementing a weight first swaps the node with the highest numbered node of
+ * its block, which keeps the property without rebuilding anything.
+ *
+ * Symbols that have not been seen yet share the NYT (not yet transmitted) leaf,
+ * whose code is sent before the symbol is written out in full.
+ */
+public class AdaptiveHuffmanTree {
+
+	private final int alphabetSize;
+	private final int symbolBits; // bits needed to write any symbol after the NYT code
+
+	/* Node arrays, indexed by node number */
+	private final long[] weight;
+	private final int[] parent;
+	private final int[] left;
+	private final int[] right;
+	private final int[] symbol; // -1 for internal nodes and the NYT leaf
+
+	private final int[] leaf; // node of every symbol, -1 if not seen yet
+	private final int root;
+	private int nyt;
+
+	public AdaptiveHuffmanTree(int alphabetSize) {
+		if (alphabetSize < 2)
+			throw new IllegalArgumentException("Alphabet size must be at least 2");
+		this.alphabetSize = alphabetSize;
+		this.symbolBits = 32 - Integer.numberOfLeadingZeros(alphabetSize - 1);
+
+		int nodes = 2 * alphabetSize + 1;
+		weight = new long[nodes];
+		parent = new int[nodes];
+		left = new int[nodes];
+		right = new int[nodes];
+		symbol = new int[nodes];
+		leaf = new int[alphabetSize];
+		for (int i = 0; i < alphabetSize; i++)
+			leaf[i] = -1;
+
+		/* At first the whole tree is the NYT leaf */
+		root = nodes - 1;
+		nyt = root;
+		parent[root] = -1;
+		left[root] = right[root] = -1;
+		symbol[root] = -1;
+	}
+
+	public int alphabetSize() {
+		return alphabetSize;
+	}
+
+	/**
+	 * @return Number of bits the symbols are written with after the NYT code
+	 */
+	public int symbolBits() {
+		return symbolBits;
+	}
+
+	public boolean contains(int s) {
+		return leaf[s] >= 0;
+	}
+
+	/**
+	 * Writes the current code of the symbol into path, one bit per element
+	 * starting from the root. Symbols not seen yet get the code of the NYT leaf.
+	 *
+	 * @param s    symbol to look up
+	 * @param path array with room for the deepest code, see maxDepth()
+	 * @return Length of the code
+	 */
+	public int code(int s, int[] path) {
+		int node = leaf[s] >= 0 ? leaf[s] : nyt;
+		int length = 0;
+		for (int n = node; n != root; n = parent[n])
+			length++;
+
+		int i = length;
+		for (int n = node; n != root; n = parent[n])
+			path[--i] = right[parent[n]] == n ? 1 : 0;
+		return length;
+	}
+
+	/**
+	 * @return Longest code the tree can ever give, the size path needs in code()
+	 */
+	public int maxDepth() {
+		return alphabetSize + 1;
+	}
+
+	public int root() {
+		return root;
+	}
+
+	/**
+	 * @return The child of an internal node the bit leads to
+	 */
+	public int child(int node, int bit) {
+		return bit == 0 ? left[node] : right[node];
+	}
+
+	public boolean isLeaf(int node) {
+		return left[node] < 0;
+	}
+
+	public boolean isNYT(int node) {
+		return node == nyt;
+	}
+
+	/**
+	 * @return The symbol of a leaf that is not the NYT leaf
+	 */
+	public int symbol(int node) {
+		return symbol[node];
+	}
+
+	/**
+	 * Counts one more occurrence of the symbol, adding it to the tree if it is the
+	 * first one.
+	 */
+	public void update(int s) {
+		int node;
+		if (leaf[s] < 0) {
+			/* The NYT leaf becomes an internal node with the new NYT on the left and the symbol on the right */
+			int old = nyt;
+			int created = old - 1;
+			nyt = old - 2;
+
+			left[old] = nyt;
+			right[old] = created;
+			symbol[old] = -1;
+			initLeaf(created, old, s);
+			initLeaf(nyt, old, -1);
+			leaf[s] = created;
+
+			weight[created] = 1;
+			weight[old] = 1;
+			node = parent[old];
+		} else {
+			node = leaf[s];
+		}
+
+		while (node >= 0) {
+			int leader = leader(node);
+			if (leader != node) {
+				swap(node, leader);
+				node = leader;
+			}
+			weight[node]++;
+			node = parent[node];
+		}
+	}
+
+	private void initLeaf(int node, int parentNode, int s) {
+		parent[node] = parentNode;
+		left[node] = right[node] = -1;
+		symbol[node] = s;
+		weight[node] = 0;
+	}
+
+	/* Highest numbered node with the same weight, which is never the node's own parent */
+	private int leader(int node) {
+		int result = node;
+		for (int i = node + 1; i <= root && weight[i] == weight[node]; i++) {
+			if (i != parent[node])
+				result = i;
+		}
+		return result;
+	}
+
+	/* Exchanges the subtrees at two positions with the same weight */
+	private void swap(int a, int b) {
+		int t = left[a];
+		left[a] = left[b];
+		left[b] = t;
+		t = right[a];
+		right[a] = right[b];
+		right[b] = t;
+		t = symbol[a];
+		symbol[a] = symbol[b];
+		symbol[b] = t;
+
+		adopt(a);
+		adopt(b);
+	}
+
+	/* Points the children of the node (or the symbol of the leaf) back at it */
+	private void adopt(int node) {
+		if (left[node] >= 0) {
+			parent[left[node]] = node;
+			parent[right[node]] = node;
+		} else if (symbol[node] >= 0) {
+			leaf[symbol[node]] = node;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package p2.Codec;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Reads bits back from an array written by BitWriter, most significant bit
+ * first.
+ *
+ * Reading past the last meaningful bit is allowed and returns zeros, which lets
+ * decoders peek a fixed number of bits near the end of the data.
+ */
+public class BitReader {
+
+	private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.BIG_ENDIAN);
+
+	private final byte[] data;
+	private final long bitLength;
+	private long position;
+
+	public BitReader(byte[] data, long bitLength) {
+		if (data == null)
+			throw new IllegalArgumentException("Data cannot be null");
+		this.data = data;
+		this.bitLength = bitLength;
+		this.position = 0;
+	}
+
+	public BitReader(EncodedBits bits) {
+		this(bits.getData(), bits.getBitLength());
+	}
+
+	/**
+	 * Returns the next length bits without consuming them.
+	 *
+	 * @param length number of bits to peek, between 1 and 56
+	 * @return The bits, right aligned
+	 */
+	public long peekBits(int length) {
+		int index = (int) (position >>> 3);
+		long window;
+		if (index + 8 <= data.length) {
+			window = (long) LONG_VIEW.get(data, index);
+		} else {
+			/* Near the end of the array, pad with zeros */
+			window = 0;
+			for (int i = 0; i < 8; i++)
+				window = (window << 8) | (index + i < data.length ? data[index + i] & 0xFF : 0);
+		}
+		return (window << (position & 7)) >>> (64 - length);
+	}
+
+	/**
+	 * Consumes length bits.
+	 *
+	 * @param length number of bits to skip
+	 */
+	public void skipBits(int length) {
+		position += length;
+	}
+
+	/**
+	 * Reads and consumes the next length bits.
+	 *
+	 * @param length number of bits to read, between 1 and 56
+	 * @return The bits, right aligned
+	 */
+	public long readBits(int length) {
+		long bits = peekBits(length);
+		position += length;
+		return bits;
+	}
+
+	/**
+	 * @return The next bit (0 or 1)
+	 */
+	public int readBit() {
+		int bit = (data[(int) (position >>> 3)] >>> (7 - (position & 7))) & 1;
+		position++;
+		return bit;
+	}
+
+	public long position() {
+		return position;
+	}
+
+	public void position(long position) {
+		this.position = position;
+	}
+
+	/**
+	 * @return True while there are meaningful bits left to read
+	 */
+	public boolean hasMore() {
+		return position < bitLength;
+	}
+
+	public long remaining() {
+		return bitLength - position;
+	}
+}
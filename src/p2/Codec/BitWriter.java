@@ -0,0 +1,114 @@
+package p2.Codec;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Packs variable length codes into a growable byte array.
+ *
+ * Bits are collected in a 64-bit accumulator and written to the array 8 bytes
+ * at a time once it fills up, most significant bit first.
+ */
+public class BitWriter {
+
+	private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.BIG_ENDIAN);
+
+	private static final int DEFAULT_SIZE = 64;
+
+	private byte[] data;
+	private int position; // bytes already flushed to data
+	private long bitBuffer; // pending bits, right aligned
+	private int bitCount; // number of pending bits in bitBuffer
+
+	public BitWriter(int initialCapacity) {
+		if (initialCapacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		data = new byte[initialCapacity];
+	}
+
+	public BitWriter() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * Appends the lowest length bits of bits, most significant first.
+	 *
+	 * @param bits   code word, right aligned
+	 * @param length number of bits to write, between 0 and 64
+	 */
+	public void writeBits(long bits, int length) {
+		if (length < 0 || length > 64)
+			throw new IllegalArgumentException("Length must be between 0 and 64");
+		if (length == 0)
+			return;
+		if (length < 64)
+			bits &= (1L << length) - 1;
+		append(bits, length);
+	}
+
+	/**
+	 * writeBits() without the checks, for the encoders' inner loops, which read
+	 * codes from a table that already holds them right aligned and masked.
+	 *
+	 * @param code   code word, right aligned, with nothing above its length
+	 * @param length number of bits to write, between 1 and 64
+	 */
+	void append(long code, int length) {
+		int free = 64 - bitCount;
+		if (length < free) {
+			bitBuffer = (bitBuffer << length) | code;
+			bitCount += length;
+		} else {
+			/* Fill the accumulator, flush it and keep whatever did not fit */
+			int rest = length - free;
+			bitBuffer = free == 64 ? code : (bitBuffer << free) | (code >>> rest);
+			if (position + 8 > data.length)
+				data = Arrays.copyOf(data, Math.max(data.length * 2, position + 8));
+			LONG_VIEW.set(data, position, bitBuffer);
+			position += 8;
+			bitBuffer = rest == 0 ? 0 : code & ((1L << rest) - 1);
+			bitCount = rest;
+		}
+	}
+
+	/**
+	 * Appends a code given as a string of '0' and '1' characters.
+	 *
+	 * @param code prefix code as generated by HuffmanCoding.huffman_code()
+	 */
+	public void writeCode(String code) {
+		for (int i = 0; i < code.length(); i += 64) {
+			int end = Math.min(code.length(), i + 64);
+			long bits = 0;
+			for (int j = i; j < end; j++)
+				bits = (bits << 1) | (code.charAt(j) == '1' ? 1 : 0);
+			writeBits(bits, end - i);
+		}
+	}
+
+	/**
+	 * @return Number of bits written so far
+	 */
+	public long bitLength() {
+		return (long) position * 8 + bitCount;
+	}
+
+	/**
+	 * Returns a copy of everything written so far with the last byte padded with
+	 * zeros. The writer can keep being used afterwards.
+	 *
+	 * @return The packed bits and their exact length
+	 */
+	public EncodedBits toEncodedBits() {
+		byte[] result = Arrays.copyOf(data, position + (bitCount + 7) / 8);
+		long pending = bitCount == 0 ? 0 : bitBuffer << (64 - bitCount);
+		for (int i = position; i < result.length; i++) {
+			result[i] = (byte) (pending >>> 56);
+			pending <<= 8;
+		}
+		return new EncodedBits(result, bitLength());
+	}
+}
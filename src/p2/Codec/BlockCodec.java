@@ -0,0 +1,127 @@
+package p2.Codec;
+
+import java.util.concurrent.ForkJoinPool;
+
+import p2.DataStructures.Map.Map;
+
+/**
+ * Encodes and decodes a string as independent blocks, using all the cores.
+ *
+ * The input is split into blocks of blockSize chars and each block is encoded
+ * on its own with the shared code table from huffman_code(): a single
+ * CharEncoder and a single DecodeTable serve every task. Since the index of the
+ * result records where every block starts, decoding also runs one block per
+ * task, reading the shared data in place and writing each block's chars
+ * straight into its part of the result.
+ */
+public class BlockCodec {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	private final ForkJoinPool pool;
+	private final int blockSize;
+
+	public BlockCodec(ForkJoinPool pool, int blockSize) {
+		if (pool == null)
+			throw new IllegalArgumentException("Pool cannot be null");
+		if (blockSize < 1)
+			throw new IllegalArgumentException("Block size must be at least 1");
+		this.pool = pool;
+		this.blockSize = blockSize;
+	}
+
+	public BlockCodec(int blockSize) {
+		this(ForkJoinPool.commonPool(), blockSize);
+	}
+
+	public BlockCodec() {
+		this(DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Encodes the input string in blocks.
+	 *
+	 * @param encodingMap The Huffman encoding map shared by all blocks
+	 * @param inputString The input string to be encoded
+	 * @return The encoded blocks and their index
+	 * @throws IllegalArgumentException If a character has no code in the map
+	 */
+	public EncodedBlocks encode(Map<String, String> encodingMap, String inputString) {
+		if (encodingMap == null || inputString == null)
+			throw new IllegalArgumentException("Parameters cannot be null");
+
+		/* One encoder for every block, it is only read while encoding */
+		CharEncoder encoder = CharEncoder.of(encodingMap);
+		int blockCount = EncodedBlocks.blockCount(inputString.length(), blockSize);
+		EncodedBits[] blocks = new EncodedBits[blockCount];
+		ParallelBlocks.forEach(pool, blockCount, block -> {
+			/* Both stay within the length of the input, a block size near Integer.MAX_VALUE included */
+			int start = block * blockSize;
+			int end = start + Math.min(blockSize, inputString.length() - start);
+			blocks[block] = encoder.encode(inputString, start, end);
+		});
+
+		/* Lay the blocks out one after the other, each one starting on a new byte */
+		long[] bitOffsets = new long[blockCount];
+		long[] bitLengths = new long[blockCount];
+		long size = 0;
+		for (int i = 0; i < blockCount; i++) {
+			bitOffsets[i] = size * 8;
+			bitLengths[i] = blocks[i].getBitLength();
+			size += blocks[i].getByteLength();
+		}
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Encoded input does not fit in an array");
+
+		byte[] data = new byte[(int) size];
+		for (int i = 0; i < blockCount; i++) {
+			EncodedBits block = blocks[i];
+			System.arraycopy(block.getData(), 0, data, (int) (bitOffsets[i] / 8), (int) block.getByteLength());
+		}
+		return new EncodedBlocks(data, bitOffsets, bitLengths, blockSize, inputString.length());
+	}
+
+	/**
+	 * Decodes every block in parallel, straight from the data of the blocks into
+	 * one array of chars.
+	 *
+	 * @param encoded     Blocks returned by encode()
+	 * @param lookupTable Prefix Code Map used to encode the blocks
+	 * @return The decoded String
+	 * @throws IllegalArgumentException If a block does not decode into as many
+	 *                                  chars as the index says
+	 */
+	public String decode(EncodedBlocks encoded, Map<String, String> lookupTable) {
+		if (encoded == null || lookupTable == null)
+			throw new IllegalArgumentException("Parameters cannot be null");
+
+		/* One decoder for every block; only symbols that are a single char can come out of encode() */
+		String[] names = new String[lookupTable.size()];
+		DecodeTable table = DecodeTable.of(lookupTable, names);
+		char[] alphabet = new char[names.length];
+		boolean[] single = new boolean[names.length];
+		for (int i = 0; i < names.length; i++) {
+			single[i] = names[i].length() == 1;
+			alphabet[i] = single[i] ? names[i].charAt(0) : 0;
+		}
+
+		byte[] data = encoded.getData();
+		char[] result = new char[encoded.getLength()];
+		ParallelBlocks.forEach(pool, encoded.getBlockCount(), block -> {
+			long start = encoded.getBitOffset(block);
+			long end = start + encoded.getBitLength(block);
+			if (start < 0 || end > (long) data.length * 8)
+				throw new IllegalArgumentException("Block " + block + " is outside of the data");
+			BitReader bits = new BitReader(data, end);
+			bits.position(start);
+			int from = block * encoded.getBlockSize();
+			for (int i = from, to = from + encoded.getBlockLength(block); i < to; i++) {
+				int symbol = table.decodeSymbol(bits);
+				if (symbol < 0 || !single[symbol] || bits.position() > end)
+					throw new IllegalArgumentException("Block " + block + " is corrupt");
+				result[i] = alphabet[symbol];
+			}
+		});
+		return new String(result);
+	}
+}
@@ -0,0 +1,212 @@
+package p2.Codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Huffman compression of raw bytes, for binary data and text that is already
+ * encoded, without decoding anything into a String.
+ *
+ * The alphabet is the 256 byte values. A byte array or buffer is compressed as
+ * a single frame in the same layout StreamCompressor writes to files (magic
+ * number, original length, CodeTable header and the encoded bits), so
+ * decompress_file() can read it back and the other way round.
+ *
+ * Streams are compressed in blocks of up to blockSize bytes, each one a frame of
+ * its own preceded by its length, so they are never held in memory whole and
+ * each block gets codes for its own contents.
+ */
+public class ByteCodec {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	private final int blockSize;
+
+	public ByteCodec(int blockSize) {
+		if (blockSize < 1)
+			throw new IllegalArgumentException("Block size must be at least 1");
+		this.blockSize = blockSize;
+	}
+
+	public ByteCodec() {
+		this(DEFAULT_BLOCK_SIZE);
+	}
+
+	public byte[] compress(byte[] data) {
+		return compress(data, 0, data.length);
+	}
+
+	/**
+	 * Compresses length bytes of data starting at offset into one frame.
+	 *
+	 * @return The frame
+	 */
+	public byte[] compress(byte[] data, int offset, int length) {
+		Histogram histogram = Histogram.ofBytes(data, offset, length);
+		int[] frequencies = StreamCompressor.scaleFrequencies(histogram.getCounts(), histogram.total());
+		CodeTable table = CodeTable.canonical(StreamCompressor.codeLengths(frequencies));
+		EncodedBits bits = CharEncoder.of(table).encode(data, offset, length);
+
+		return CodeTable.frame(out -> {
+			out.writeInt(StreamCompressor.MAGIC);
+			out.writeLong(length);
+			table.writeHeader(out);
+		}, bits);
+	}
+
+	/**
+	 * Compresses the remaining bytes of the buffer, which are consumed. Direct
+	 * buffers are copied to an array first.
+	 *
+	 * @return A buffer with the frame, ready to be read
+	 */
+	public ByteBuffer compress(ByteBuffer input) {
+		byte[] frame;
+		if (input.hasArray()) {
+			frame = compress(input.array(), input.arrayOffset() + input.position(), input.remaining());
+			input.position(input.limit());
+		} else {
+			byte[] data = new byte[input.remaining()];
+			input.get(data);
+			frame = compress(data);
+		}
+		return ByteBuffer.wrap(frame);
+	}
+
+	public byte[] decompress(byte[] frame) throws IllegalArgumentException {
+		return decompress(frame, 0, frame.length);
+	}
+
+	/**
+	 * Decompresses a frame written by compress().
+	 *
+	 * @return The original bytes
+	 * @throws IllegalArgumentException if the data is not a frame or is corrupt
+	 */
+	public byte[] decompress(byte[] frame, int offset, int length) throws IllegalArgumentException {
+		ByteArrayInputStream in = new ByteArrayInputStream(frame, offset, length);
+		DataInputStream header = new DataInputStream(in);
+		long total;
+		CodeTable table;
+		try {
+			if (header.readInt() != StreamCompressor.MAGIC)
+				throw new IllegalArgumentException("Not a compressed frame");
+			total = header.readLong();
+			table = CodeTable.readHeader(header, StreamCompressor.ALPHABET_SIZE);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Invalid frame header", e);
+		}
+		if (total < 0 || total > CodeTable.MAX_ARRAY_SIZE)
+			throw new IllegalArgumentException("Invalid frame length");
+
+		byte[] result = new byte[(int) total];
+		if (total == 0)
+			return result;
+
+		/* The encoded bits are whatever follows the header */
+		long end = (long) (offset + length) * 8;
+		BitReader bits = new BitReader(frame, end);
+		bits.position((long) (offset + length - in.available()) * 8);
+		DecodeTable decoder = table.decodeTable();
+		for (int i = 0; i < result.length; i++) {
+			int symbol = decoder.decodeSymbol(bits);
+			if (symbol < 0)
+				throw new IllegalArgumentException("Compressed data is corrupt");
+			result[i] = (byte) symbol;
+		}
+		if (bits.position() > end)
+			throw new IllegalArgumentException("Compressed data is truncated");
+		return result;
+	}
+
+	/**
+	 * Decompresses the frame in the remaining bytes of the buffer, which are
+	 * consumed.
+	 *
+	 * @return A buffer with the original bytes, ready to be read
+	 */
+	public ByteBuffer decompress(ByteBuffer input) throws IllegalArgumentException {
+		byte[] result;
+		if (input.hasArray()) {
+			result = decompress(input.array(), input.arrayOffset() + input.position(), input.remaining());
+			input.position(input.limit());
+		} else {
+			byte[] frame = new byte[input.remaining()];
+			input.get(frame);
+			result = decompress(frame);
+		}
+		return ByteBuffer.wrap(result);
+	}
+
+	/**
+	 * Compresses everything left in the input stream, one block at a time. Neither
+	 * stream is closed.
+	 *
+	 * @return Number of bytes written
+	 * @throws IOException if a stream cannot be read or written
+	 */
+	public long compress(InputStream in, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		byte[] block = new byte[blockSize];
+		long written = 0;
+		int length;
+		while ((length = in.readNBytes(block, 0, blockSize)) > 0) {
+			byte[] frame = compress(block, 0, length);
+			data.writeInt(frame.length);
+			data.write(frame);
+			written += Integer.BYTES + frame.length;
+		}
+		data.flush();
+		return written;
+	}
+
+	/**
+	 * Restores a stream written by compress(InputStream, OutputStream) with the
+	 * same block size or a smaller one. Neither stream is closed.
+	 *
+	 * @return Number of bytes written
+	 * @throws IOException if a stream cannot be read or written, or the input is
+	 *                     not compressed blocks
+	 */
+	public long decompress(InputStream in, OutputStream out) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		byte[] frameLength = new byte[Integer.BYTES];
+		long written = 0;
+		int read;
+		while ((read = data.readNBytes(frameLength, 0, frameLength.length)) > 0) {
+			if (read < frameLength.length)
+				throw new EOFException("Compressed stream is truncated");
+			int length = ByteBuffer.wrap(frameLength).getInt();
+			if (length < 0 || length > maxFrameSize(blockSize))
+				throw new IOException("Invalid block length");
+
+			byte[] frame = new byte[length];
+			data.readFully(frame);
+			try {
+				byte[] block = decompress(frame);
+				out.write(block);
+				written += block.length;
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Compressed stream is corrupt", e);
+			}
+		}
+		out.flush();
+		return written;
+	}
+
+	/*
+	 * Largest frame compress() writes for a block: magic number and length, the
+	 * longest CodeTable header for 256 bytes (a 2 byte count, then up to 2 bytes
+	 * of gap and a length per symbol) and the longest code for every byte
+	 */
+	private static long maxFrameSize(int blockSize) {
+		return Integer.BYTES + Long.BYTES + 2 + 3 * StreamCompressor.ALPHABET_SIZE
+				+ ((long) blockSize * StreamCompressor.MAX_CODE_LENGTH + 7) / 8;
+	}
+}
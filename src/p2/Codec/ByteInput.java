@@ -0,0 +1,43 @@
+package p2.Codec;
+
+import java.io.InputStream;
+
+/**
+ * Reads bytes from an array, like ByteArrayInputStream but without locking.
+ *
+ * Headers are read one byte at a time through a DataInputStream, and the
+ * synchronized reads of ByteArrayInputStream show up when a header holds a few
+ * hundred thousand variable length integers.
+ */
+final class ByteInput extends InputStream {
+
+	private final byte[] data;
+	private int position;
+
+	ByteInput(byte[] data) {
+		this.data = data;
+		this.position = 0;
+	}
+
+	@Override
+	public int read() {
+		return position < data.length ? data[position++] & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) {
+		if (length == 0)
+			return 0;
+		if (position >= data.length)
+			return -1;
+		int count = Math.min(length, data.length - position);
+		System.arraycopy(data, position, buffer, offset, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return data.length - position;
+	}
+}
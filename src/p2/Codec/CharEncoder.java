@@ -0,0 +1,183 @@
+package p2.Codec;
+
+import java.util.Arrays;
+
+import p2.DataStructures.List.List;
+import p2.DataStructures.Map.Map;
+
+/**
+ * Encoder with its prefix codes in arrays indexed by char or byte value (or by
+ * symbol number, for alphabets numbered densely), so encoding a symbol is two
+ * array reads instead of building a one character String and looking it up in
+ * a Map.
+ *
+ * The codes are packed by BitWriter.append(), which stores its 64-bit
+ * accumulator in the output 8 bytes at a time once it fills up. The loop over
+ * the input allocates nothing, apart from growing the output when the first
+ * guess of its size falls short.
+ */
+public class CharEncoder {
+
+	private final long[] codes;
+	private final byte[] lengths; // 0 for values without a code
+
+	private CharEncoder(long[] codes, byte[] lengths) {
+		this.codes = codes;
+		this.lengths = lengths;
+	}
+
+	/**
+	 * Builds the encoder for a map made by huffman_code(). Only keys that are a
+	 * single char can be encoded; any other key is left out.
+	 *
+	 * @param encodingMap Map from every symbol to its code as a String
+	 * @return The encoder
+	 * @throws IllegalArgumentException if a code is longer than 64 bits or is not
+	 *                                  made of '0' and '1'
+	 */
+	public static CharEncoder of(Map<String, String> encodingMap) throws IllegalArgumentException {
+		List<String> keys = encodingMap.getKeys();
+		int size = 0;
+		for (String key : keys) {
+			if (key.length() == 1)
+				size = Math.max(size, key.charAt(0) + 1);
+		}
+
+		long[] codes = new long[size];
+		byte[] lengths = new byte[size];
+		for (String key : keys) {
+			if (key.length() != 1)
+				continue;
+			String code = encodingMap.get(key);
+			if (code.isEmpty() || code.length() > 64)
+				throw new IllegalArgumentException("Codes must be between 1 and 64 bits long");
+			long bits = 0;
+			for (int i = 0; i < code.length(); i++) {
+				char bit = code.charAt(i);
+				if (bit != '0' && bit != '1')
+					throw new IllegalArgumentException("Codes must only have '0' and '1' characters");
+				bits = bits << 1 | (bit - '0');
+			}
+			codes[key.charAt(0)] = bits;
+			lengths[key.charAt(0)] = (byte) code.length();
+		}
+		return new CharEncoder(codes, lengths);
+	}
+
+	/**
+	 * Builds the encoder for codes whose symbols are named by a single char, like
+	 * the ones huffman_code_table() returns for compute_fd() letters.
+	 */
+	public static CharEncoder of(SymbolCodes symbolCodes) {
+		int size = 0;
+		for (int symbol = 0; symbol < symbolCodes.size(); symbol++) {
+			String name = symbolCodes.name(symbol);
+			if (name.length() == 1)
+				size = Math.max(size, name.charAt(0) + 1);
+		}
+
+		long[] codes = new long[size];
+		byte[] lengths = new byte[size];
+		for (int symbol = 0; symbol < symbolCodes.size(); symbol++) {
+			String name = symbolCodes.name(symbol);
+			if (name.length() == 1) {
+				codes[name.charAt(0)] = symbolCodes.code(symbol);
+				lengths[name.charAt(0)] = (byte) symbolCodes.length(symbol);
+			}
+		}
+		return new CharEncoder(codes, lengths);
+	}
+
+	/**
+	 * Builds the encoder for a table whose symbols are the char or byte values
+	 * themselves.
+	 */
+	public static CharEncoder of(CodeTable table) {
+		int size = table.alphabetSize();
+		long[] codes = Arrays.copyOf(table.getCodes(), size);
+		byte[] lengths = new byte[size];
+		for (int symbol = 0; symbol < size; symbol++)
+			lengths[symbol] = (byte) table.getLength(symbol);
+		return new CharEncoder(codes, lengths);
+	}
+
+	/**
+	 * @return Whether the char or byte value has a code
+	 */
+	public boolean hasCode(int value) {
+		return value < lengths.length && lengths[value] != 0;
+	}
+
+	/**
+	 * Encodes every char of the input.
+	 *
+	 * @throws IllegalArgumentException if a char has no code
+	 */
+	public EncodedBits encode(String input) throws IllegalArgumentException {
+		return encode(input, 0, input.length());
+	}
+
+	/**
+	 * Encodes the chars of the input from start, inclusive, to end, exclusive.
+	 *
+	 * @throws IllegalArgumentException if a char has no code
+	 */
+	public EncodedBits encode(String input, int start, int end) throws IllegalArgumentException {
+		long[] codes = this.codes;
+		byte[] lengths = this.lengths;
+		BitWriter out = new BitWriter(initialSize(end - start));
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			int length = c < lengths.length ? lengths[c] : 0;
+			if (length == 0)
+				throw new IllegalArgumentException("No code for symbol '" + c + "'");
+			out.append(codes[c], length);
+		}
+		return out.toEncodedBits();
+	}
+
+	/**
+	 * Encodes the bytes of data from offset to offset + length, indexing the table
+	 * by their unsigned value.
+	 *
+	 * @throws IllegalArgumentException if a byte has no code
+	 */
+	public EncodedBits encode(byte[] data, int offset, int length) throws IllegalArgumentException {
+		long[] codes = this.codes;
+		byte[] lengths = this.lengths;
+		BitWriter out = new BitWriter(initialSize(length));
+		for (int i = offset, end = offset + length; i < end; i++) {
+			int b = data[i] & 0xFF;
+			int codeLength = b < lengths.length ? lengths[b] : 0;
+			if (codeLength == 0)
+				throw new IllegalArgumentException("No code for byte " + b);
+			out.append(codes[b], codeLength);
+		}
+		return out.toEncodedBits();
+	}
+
+	/**
+	 * Encodes symbols numbered like the table, such as the code points of a
+	 * CodePointAlphabet.
+	 *
+	 * @throws IllegalArgumentException if a symbol has no code
+	 */
+	public EncodedBits encode(int[] symbols, int offset, int length) throws IllegalArgumentException {
+		long[] codes = this.codes;
+		byte[] lengths = this.lengths;
+		BitWriter out = new BitWriter(initialSize(length));
+		for (int i = offset, end = offset + length; i < end; i++) {
+			int symbol = symbols[i];
+			int codeLength = symbol >= 0 && symbol < lengths.length ? lengths[symbol] : 0;
+			if (codeLength == 0)
+				throw new IllegalArgumentException("No code for symbol " + symbol);
+			out.append(codes[symbol], codeLength);
+		}
+		return out.toEncodedBits();
+	}
+
+	/* Half a byte per symbol, rounded up to whole longs, the way encode_bits() guesses */
+	private static int initialSize(int symbols) {
+		return (symbols / 2 + 15) & ~7;
+	}
+}
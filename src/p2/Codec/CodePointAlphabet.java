@@ -0,0 +1,182 @@
+package p2.Codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The distinct Unicode code points of a text, numbered 0 to size() - 1 in
+ * increasing order, so histograms and code tables over them are small dense
+ * arrays.
+ *
+ * Text is read a code point at a time, so a character outside the BMP (emoji,
+ * CJK extensions) is one symbol instead of two surrogate halves, and nothing is
+ * merged into a category: every code point maps back to itself. A surrogate
+ * that is not part of a pair is a code point of its own, so any String round
+ * trips.
+ *
+ * Code points are looked up through pages of 256 entries, allocated only for
+ * the blocks of 256 code points the text uses, which keeps the table small for
+ * a few scripts and the lookup a couple of array reads.
+ */
+public class CodePointAlphabet {
+
+	private static final int PAGE_BITS = 8;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int PAGE_COUNT = (Character.MAX_CODE_POINT >>> PAGE_BITS) + 1;
+
+	private final int[] codePoints; // code point of every symbol, increasing
+	private final int[][] pages; // symbol + 1 of every code point, 0 if it is not in the alphabet
+
+	private CodePointAlphabet(int[][] pages) {
+		this.pages = pages;
+		int size = 0;
+		for (int[] page : pages) {
+			if (page != null) {
+				for (int entry : page)
+					size += entry != 0 ? 1 : 0;
+			}
+		}
+
+		/* Number the code points in increasing order */
+		codePoints = new int[size];
+		int symbol = 0;
+		for (int p = 0; p < pages.length; p++) {
+			if (pages[p] == null)
+				continue;
+			for (int i = 0; i < PAGE_SIZE; i++) {
+				if (pages[p][i] != 0) {
+					codePoints[symbol] = p << PAGE_BITS | i;
+					pages[p][i] = ++symbol;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The alphabet of every code point in the text
+	 */
+	public static CodePointAlphabet of(CharSequence text) {
+		int[][] pages = new int[PAGE_COUNT][];
+		for (int i = 0; i < text.length();) {
+			int codePoint = Character.codePointAt(text, i);
+			mark(pages, codePoint);
+			i += Character.charCount(codePoint);
+		}
+		return new CodePointAlphabet(pages);
+	}
+
+	/**
+	 * @return The alphabet of the given code points, in any order
+	 * @throws IllegalArgumentException if a value is not a code point
+	 */
+	public static CodePointAlphabet of(int[] codePoints) throws IllegalArgumentException {
+		int[][] pages = new int[PAGE_COUNT][];
+		for (int codePoint : codePoints) {
+			if (!Character.isValidCodePoint(codePoint))
+				throw new IllegalArgumentException("Not a code point: " + codePoint);
+			mark(pages, codePoint);
+		}
+		return new CodePointAlphabet(pages);
+	}
+
+	private static void mark(int[][] pages, int codePoint) {
+		int p = codePoint >>> PAGE_BITS;
+		if (pages[p] == null)
+			pages[p] = new int[PAGE_SIZE];
+		pages[p][codePoint & (PAGE_SIZE - 1)] = 1;
+	}
+
+	/**
+	 * @return Number of symbols
+	 */
+	public int size() {
+		return codePoints.length;
+	}
+
+	/**
+	 * @return The symbol of the code point, -1 if it is not in the alphabet
+	 */
+	public int symbol(int codePoint) {
+		if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT)
+			return -1;
+		int[] page = pages[codePoint >>> PAGE_BITS];
+		return page == null ? -1 : page[codePoint & (PAGE_SIZE - 1)] - 1;
+	}
+
+	public int codePoint(int symbol) {
+		return codePoints[symbol];
+	}
+
+	/**
+	 * Converts text to the symbols of its code points.
+	 *
+	 * @return The symbols, one per code point
+	 * @throws IllegalArgumentException if a code point is not in the alphabet
+	 */
+	public int[] toSymbols(CharSequence text) throws IllegalArgumentException {
+		int[] symbols = new int[Character.codePointCount(text, 0, text.length())];
+		int count = 0;
+		for (int i = 0; i < text.length();) {
+			int codePoint = Character.codePointAt(text, i);
+			int symbol = symbol(codePoint);
+			if (symbol < 0)
+				throw new IllegalArgumentException("Code point U+" + Integer.toHexString(codePoint).toUpperCase()
+						+ " is not in the alphabet");
+			symbols[count++] = symbol;
+			i += Character.charCount(codePoint);
+		}
+		return symbols;
+	}
+
+	/**
+	 * Converts symbols back to text.
+	 */
+	public String toString(int[] symbols, int offset, int length) {
+		/* Every code point in the BMP is a single char */
+		if (codePoints.length == 0 || codePoints[codePoints.length - 1] < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+			char[] chars = new char[length];
+			for (int i = 0; i < length; i++)
+				chars[i] = (char) codePoints[symbols[offset + i]];
+			return new String(chars);
+		}
+
+		StringBuilder result = new StringBuilder(length);
+		for (int i = offset; i < offset + length; i++)
+			result.appendCodePoint(codePoints[symbols[i]]);
+		return result.toString();
+	}
+
+	/**
+	 * Writes the number of code points and the gaps between them, as variable
+	 * length integers, which is one byte per code point for text in one script.
+	 */
+	public void writeHeader(DataOutput out) throws IOException {
+		CodeTable.writeVarInt(out, codePoints.length);
+		int previous = -1;
+		for (int codePoint : codePoints) {
+			CodeTable.writeVarInt(out, codePoint - previous - 1);
+			previous = codePoint;
+		}
+	}
+
+	/**
+	 * Reads an alphabet written by writeHeader().
+	 *
+	 * @throws IOException if the header cannot be read or is not valid
+	 */
+	public static CodePointAlphabet readHeader(DataInput in) throws IOException {
+		int size = CodeTable.readVarInt(in);
+		if (size < 0 || size > Character.MAX_CODE_POINT + 1)
+			throw new IOException("Invalid alphabet size");
+		int[] codePoints = new int[size];
+		long codePoint = -1;
+		for (int i = 0; i < size; i++) {
+			codePoint += (CodeTable.readVarInt(in) & 0xFFFFFFFFL) + 1;
+			if (codePoint > Character.MAX_CODE_POINT)
+				throw new IOException("Invalid code point in alphabet");
+			codePoints[i] = (int) codePoint;
+		}
+		return of(codePoints);
+	}
+}
@@ -0,0 +1,88 @@
+package p2.Codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Lossless Huffman coding of any String over its Unicode code points.
+ *
+ * The text's code points are numbered densely by a CodePointAlphabet, counted
+ * in a Histogram indexed by those numbers and coded through a FlatHuffmanTree,
+ * so no String keyed map is involved. Supplementary characters stay whole and
+ * every character keeps its own code, unlike compute_fd(), which splits
+ * surrogate pairs and groups spaces and punctuation into categories.
+ *
+ * Layout: magic number, number of code points, the alphabet header, the
+ * CodeTable header with the code length of every symbol, and the encoded bits.
+ */
+public class CodePointCodec {
+
+	public static final int MAGIC = 0x48554655; // "HUFU"
+
+	/**
+	 * Compresses the text.
+	 *
+	 * @return The compressed bytes
+	 */
+	public static byte[] encode(String text) {
+		CodePointAlphabet alphabet = CodePointAlphabet.of(text);
+		int[] symbols = alphabet.toSymbols(text);
+		Histogram histogram = new Histogram(Math.max(1, alphabet.size()));
+		for (int symbol : symbols)
+			histogram.add(symbol);
+		long[] weights = Arrays.copyOf(histogram.getCounts(), alphabet.size());
+		CodeTable table = CodeTable.canonical(FlatHuffmanTree.codeLengths(weights, CodeTable.MAX_CODE_LENGTH));
+		EncodedBits bits = CharEncoder.of(table).encode(symbols, 0, symbols.length);
+
+		return CodeTable.frame(out -> {
+			out.writeInt(MAGIC);
+			out.writeInt(symbols.length);
+			alphabet.writeHeader(out);
+			table.writeHeader(out);
+		}, bits);
+	}
+
+	/**
+	 * Restores the text compressed by encode().
+	 *
+	 * @throws IllegalArgumentException if the bytes are not compressed text or are
+	 *                                  corrupt
+	 */
+	public static String decode(byte[] data) throws IllegalArgumentException {
+		ByteArrayInputStream in = new ByteArrayInputStream(data);
+		DataInputStream header = new DataInputStream(in);
+		int count;
+		CodePointAlphabet alphabet;
+		CodeTable table;
+		try {
+			if (header.readInt() != MAGIC)
+				throw new IllegalArgumentException("Not compressed text");
+			count = header.readInt();
+			alphabet = CodePointAlphabet.readHeader(header);
+			table = CodeTable.readHeader(header, alphabet.size());
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Invalid header", e);
+		}
+		if (count < 0 || (count > 0 && alphabet.size() == 0) || table.alphabetSize() > alphabet.size())
+			throw new IllegalArgumentException("Header does not match the alphabet");
+
+		int[] symbols = new int[count];
+		if (count > 0) {
+			long end = (long) data.length * 8;
+			BitReader bits = new BitReader(data, end);
+			bits.position((long) (data.length - in.available()) * 8);
+			DecodeTable decoder = table.decodeTable();
+			for (int i = 0; i < count; i++) {
+				int symbol = decoder.decodeSymbol(bits);
+				if (symbol < 0)
+					throw new IllegalArgumentException("Compressed text is corrupt");
+				symbols[i] = symbol;
+			}
+			if (bits.position() > end)
+				throw new IllegalArgumentException("Compressed text is truncated");
+		}
+		return alphabet.toString(symbols, 0, count);
+	}
+}
@@ -0,0 +1,235 @@
+package p2.Codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Canonical Huffman code table indexed by symbol value.
+ *
+ * A canonical code is fully determined by the code length of every symbol:
+ * codes are handed out in increasing order of (length, symbol), so the table
+ * can be saved as just the lengths and rebuilt anywhere without the Huffman
+ * tree, the same way DEFLATE does it.
+ *
+ * The header written by writeHeader() has the number of symbols followed by a
+ * (symbol gap, length) pair per symbol with a code, both as variable length
+ * integers, which is about two bytes per symbol.
+ */
+public class CodeTable {
+
+	public static final int MAX_CODE_LENGTH = 64;
+
+	/* Largest array the JVM can allocate */
+	static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	/* Writes the header of an in-memory frame, see frame() */
+	interface HeaderWriter {
+		void write(DataOutput out) throws IOException;
+	}
+
+	private final long[] codes;
+	private final int[] lengths;
+	private final int maxLength;
+
+	private CodeTable(long[] codes, int[] lengths, int maxLength) {
+		this.codes = codes;
+		this.lengths = lengths;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Assigns canonical codes from code lengths.
+	 *
+	 * @param lengths code length of every symbol, 0 if the symbol has no code
+	 * @return The canonical code table
+	 * @throws IllegalArgumentException if the lengths cannot form a prefix code
+	 */
+	public static CodeTable canonical(int[] lengths) throws IllegalArgumentException {
+		int[] lengthCount = new int[MAX_CODE_LENGTH + 1];
+		int maxLength = 0;
+		for (int length : lengths) {
+			if (length < 0 || length > MAX_CODE_LENGTH)
+				throw new IllegalArgumentException("Code lengths must be between 0 and " + MAX_CODE_LENGTH);
+			lengthCount[length]++;
+			maxLength = Math.max(maxLength, length);
+		}
+		lengthCount[0] = 0;
+
+		/* First code of each length; codes of one length follow the last code of the previous one */
+		long[] nextCode = new long[maxLength + 2];
+		long code = 0;
+		for (int length = 1; length <= maxLength; length++) {
+			code = (code + lengthCount[length - 1]) << 1;
+			nextCode[length] = code;
+			/* Kraft inequality: there must be room for all the codes of this length */
+			if (length < 64 && code + lengthCount[length] > (1L << length))
+				throw new IllegalArgumentException("Code lengths are oversubscribed");
+		}
+
+		long[] codes = new long[lengths.length];
+		for (int symbol = 0; symbol < lengths.length; symbol++) {
+			if (lengths[symbol] > 0)
+				codes[symbol] = nextCode[lengths[symbol]]++;
+		}
+		return new CodeTable(codes, lengths.clone(), maxLength);
+	}
+
+	public long getCode(int symbol) {
+		return codes[symbol];
+	}
+
+	public int getLength(int symbol) {
+		return lengths[symbol];
+	}
+
+	/**
+	 * The code words themselves, indexed by symbol. Callers must not modify them.
+	 */
+	public long[] getCodes() {
+		return codes;
+	}
+
+	/**
+	 * The code lengths themselves, indexed by symbol. Callers must not modify them.
+	 */
+	public int[] getLengths() {
+		return lengths;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	public int alphabetSize() {
+		return lengths.length;
+	}
+
+	/**
+	 * @return The decoder for this table
+	 */
+	public DecodeTable decodeTable() {
+		return new DecodeTable(codes, lengths);
+	}
+
+	/**
+	 * Writes the code length of every symbol that has a code.
+	 */
+	public void writeHeader(DataOutput out) throws IOException {
+		int symbolCount = 0;
+		for (int length : lengths) {
+			if (length > 0)
+				symbolCount++;
+		}
+
+		writeVarInt(out, symbolCount);
+		int previous = -1;
+		for (int symbol = 0; symbol < lengths.length; symbol++) {
+			if (lengths[symbol] > 0) {
+				writeVarInt(out, symbol - previous - 1);
+				out.writeByte(lengths[symbol]);
+				previous = symbol;
+			}
+		}
+	}
+
+	/**
+	 * Builds a compressed frame in memory: whatever header writes, followed by the
+	 * encoded bits.
+	 *
+	 * @return The frame
+	 * @throws IllegalArgumentException if the frame does not fit in an array
+	 */
+	static byte[] frame(HeaderWriter header, EncodedBits bits) throws IllegalArgumentException {
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		try {
+			header.write(new DataOutputStream(headerBytes));
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // Writing to memory does not fail
+		}
+
+		int headerLength = headerBytes.size();
+		if (headerLength + bits.getByteLength() > MAX_ARRAY_SIZE)
+			throw new IllegalArgumentException("Compressed data does not fit in an array");
+		byte[] frame = new byte[headerLength + (int) bits.getByteLength()];
+		System.arraycopy(headerBytes.toByteArray(), 0, frame, 0, headerLength);
+		System.arraycopy(bits.getData(), 0, frame, headerLength, (int) bits.getByteLength());
+		return frame;
+	}
+
+	/**
+	 * Reads a header written by writeHeader() and rebuilds the canonical codes.
+	 *
+	 * @param in           stream positioned at the header
+	 * @param alphabetSize size of the alphabet, every symbol of the header must be
+	 *                     below it
+	 * @return The canonical code table, covering the whole alphabet
+	 * @throws IOException if the header cannot be read or is not valid
+	 */
+	public static CodeTable readHeader(DataInput in, int alphabetSize) throws IOException {
+		return readHeader(in, alphabetSize, alphabetSize);
+	}
+
+	/**
+	 * Reads a header written by writeHeader() for an alphabet of any size.
+	 */
+	public static CodeTable readHeader(DataInput in) throws IOException {
+		return readHeader(in, 0, MAX_ARRAY_SIZE);
+	}
+
+	/* The header comes from outside, so the count and every symbol are checked before allocating anything */
+	private static CodeTable readHeader(DataInput in, int alphabetSize, int symbolLimit) throws IOException {
+		int symbolCount = readVarInt(in);
+		if (symbolCount < 0 || symbolCount > symbolLimit)
+			throw new IOException("Invalid number of symbols in code table header");
+
+		/* Grown as symbols are read, so a corrupt count runs out of input before allocating much */
+		int[] symbols = new int[Math.min(symbolCount, 256)];
+		int[] symbolLengths = new int[symbols.length];
+		long symbol = -1;
+		for (int i = 0; i < symbolCount; i++) {
+			int gap = readVarInt(in);
+			symbol += (gap & 0xFFFFFFFFL) + 1;
+			if (symbol >= symbolLimit)
+				throw new IOException("Invalid symbol in code table header");
+			if (i == symbols.length) {
+				symbols = Arrays.copyOf(symbols, (int) Math.min(symbolCount, 2L * i));
+				symbolLengths = Arrays.copyOf(symbolLengths, symbols.length);
+			}
+			symbols[i] = (int) symbol;
+			symbolLengths[i] = in.readUnsignedByte();
+		}
+
+		int[] lengths = new int[Math.max(alphabetSize, (int) symbol + 1)];
+		for (int i = 0; i < symbolCount; i++)
+			lengths[symbols[i]] = symbolLengths[i];
+		try {
+			return canonical(lengths);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid code table header", e);
+		}
+	}
+
+	/* Seven bits per byte, the highest bit tells whether more bytes follow */
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	static int readVarInt(DataInput in) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return result;
+		}
+		throw new IOException("Variable length integer is too long");
+	}
+}
@@ -0,0 +1,181 @@
+package p2.Codec;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import p2.HuffmanCoding;
+import p2.DataStructures.List.List;
+import p2.DataStructures.Map.Map;
+
+/**
+ * Bounded cache of the prefix code maps built by huffman_code(), shared by
+ * every thread, for workloads with many short messages of similar contents.
+ *
+ * A frequency distribution is reduced to a fingerprint: its symbols and the
+ * probability of each one rounded to a whole bit (the length its code would
+ * ideally have), up to maxBits. Distributions with the same fingerprint get the
+ * code map built for the first of them, which has a code for every one of their
+ * symbols and lengths close to the best ones. The least recently used map is
+ * dropped when the cache is full.
+ */
+public class CodeTableCache {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+	public static final int DEFAULT_MAX_BITS = 4;
+
+	private final int capacity;
+	private final int maxBits;
+	private final LinkedHashMap<Fingerprint, Map<String, String>> tables;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param capacity most code maps kept
+	 * @param maxBits  longest rounded code length told apart; rarer symbols all
+	 *                 round to it, since their counts vary the most between
+	 *                 messages and matter the least for the encoded size
+	 */
+	@SuppressWarnings("serial")
+	public CodeTableCache(int capacity, int maxBits) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		if (maxBits < 1 || maxBits > 63)
+			throw new IllegalArgumentException("Maximum bits must be between 1 and 63");
+		this.capacity = capacity;
+		this.maxBits = maxBits;
+		/* Access order, so the eldest entry is the least recently used one */
+		this.tables = new LinkedHashMap<Fingerprint, Map<String, String>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(java.util.Map.Entry<Fingerprint, Map<String, String>> eldest) {
+				if (size() <= CodeTableCache.this.capacity)
+					return false;
+				evictions.incrementAndGet();
+				return true;
+			}
+		};
+	}
+
+	public CodeTableCache(int capacity) {
+		this(capacity, DEFAULT_MAX_BITS);
+	}
+
+	public CodeTableCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Returns the prefix codes for a frequency distribution, building them only
+	 * if no distribution with the same fingerprint was seen recently. The map is
+	 * shared with other callers and must not be modified.
+	 *
+	 * @param frequencyDistribution frequency of every symbol, as computed by
+	 *                              compute_fd()
+	 * @return Map from every symbol of the distribution to its prefix code
+	 */
+	public Map<String, String> get(Map<String, Integer> frequencyDistribution) {
+		if (frequencyDistribution == null)
+			throw new IllegalArgumentException("Frequency distribution cannot be null");
+
+		Fingerprint key = fingerprint(frequencyDistribution);
+		Map<String, String> table;
+		synchronized (tables) {
+			table = tables.get(key);
+		}
+		if (table != null) {
+			hits.incrementAndGet();
+			return table;
+		}
+
+		/* Build outside the lock; if another thread built the same one meanwhile, keep theirs */
+		misses.incrementAndGet();
+		Map<String, String> built = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(frequencyDistribution));
+		synchronized (tables) {
+			table = tables.putIfAbsent(key, built);
+		}
+		return table != null ? table : built;
+	}
+
+	public long hits() {
+		return hits.get();
+	}
+
+	public long misses() {
+		return misses.get();
+	}
+
+	public long evictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return Hits divided by lookups, 0 before the first lookup
+	 */
+	public double hitRate() {
+		long h = hits.get(), lookups = h + misses.get();
+		return lookups == 0 ? 0 : (double) h / lookups;
+	}
+
+	public int size() {
+		synchronized (tables) {
+			return tables.size();
+		}
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public void clear() {
+		synchronized (tables) {
+			tables.clear();
+		}
+	}
+
+	/* Sorts the symbols and rounds -log2 of their probability down to a whole bit, at most maxBits */
+	private Fingerprint fingerprint(Map<String, Integer> frequencyDistribution) {
+		List<String> keys = frequencyDistribution.getKeys();
+		String[] symbols = new String[keys.size()];
+		long total = 0;
+		for (int i = 0; i < symbols.length; i++) {
+			symbols[i] = keys.get(i);
+			total += Math.max(0, frequencyDistribution.get(symbols[i]));
+		}
+		Arrays.sort(symbols);
+
+		int[] levels = new int[symbols.length];
+		for (int i = 0; i < symbols.length; i++) {
+			int frequency = frequencyDistribution.get(symbols[i]);
+			levels[i] = frequency <= 0 ? maxBits : Math.min(maxBits, 63 - Long.numberOfLeadingZeros(total / frequency));
+		}
+		return new Fingerprint(symbols, levels);
+	}
+
+	private static class Fingerprint {
+
+		private final String[] symbols;
+		private final int[] levels;
+		private final int hash;
+
+		Fingerprint(String[] symbols, int[] levels) {
+			this.symbols = symbols;
+			this.levels = levels;
+			this.hash = 31 * Arrays.hashCode(symbols) + Arrays.hashCode(levels);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Fingerprint))
+				return false;
+			Fingerprint that = (Fingerprint) other;
+			return hash == that.hash && Arrays.equals(levels, that.levels) && Arrays.equals(symbols, that.symbols);
+		}
+	}
+}
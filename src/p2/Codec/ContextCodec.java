@@ -0,0 +1,229 @@
+package p2.Codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Order-1 Huffman coding of bytes: the code of every byte comes from a table
+ * chosen by the byte before it, so what follows 'q' or a newline gets codes
+ * for what actually follows them instead of the codes of the whole input.
+ *
+ * A table costs about two bytes per symbol in the header, so a context only
+ * gets its own table when that saves more than it costs. The other contexts
+ * share one table built from all of their bytes together. The first byte is
+ * coded in the context of byte 0.
+ *
+ * Switching tables is an array lookup: the encoder keeps the codes of every
+ * table in one flat array, where table t starts at t * 256, and a context
+ * picks its start from a 256 entry array. The decoder keeps a DecodeTable per
+ * context, with contexts sharing a table sharing the same DecodeTable.
+ *
+ * Layout: magic number, number of bytes, number of tables, number of contexts
+ * some byte follows and a (context gap, table number) pair for each of them as
+ * variable length integers, the CodeTable header of every table and the
+ * encoded bits.
+ */
+public class ContextCodec {
+
+	public static final int MAGIC = 0x48554643; // "HUFC"
+
+	private static final int CONTEXTS = Histogram.BYTE_ALPHABET;
+
+	public static byte[] encode(byte[] data) {
+		return encode(data, 0, data.length);
+	}
+
+	/**
+	 * Compresses length bytes of data starting at offset.
+	 *
+	 * @return The compressed bytes
+	 */
+	public static byte[] encode(byte[] data, int offset, int length) {
+		/* counts[context * 256 + byte] */
+		long[] counts = new long[CONTEXTS * CONTEXTS];
+		int previous = 0;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			int b = data[i] & 0xFF;
+			counts[previous << 8 | b]++;
+			previous = b;
+		}
+
+		int[] contextTables = chooseTables(counts);
+		int tableCount = 0;
+		for (int table : contextTables)
+			tableCount = Math.max(tableCount, table + 1);
+
+		/* Codes of every table, table t at t * 256 */
+		CodeTable[] tables = new CodeTable[tableCount];
+		long[] codes = new long[tableCount * CONTEXTS];
+		byte[] lengths = new byte[tableCount * CONTEXTS];
+		for (int t = 0; t < tableCount; t++) {
+			long[] weights = new long[CONTEXTS];
+			for (int context = 0; context < CONTEXTS; context++) {
+				if (contextTables[context] == t) {
+					for (int b = 0; b < CONTEXTS; b++)
+						weights[b] += counts[context << 8 | b];
+				}
+			}
+			tables[t] = CodeTable.canonical(FlatHuffmanTree.codeLengths(weights, CodeTable.MAX_CODE_LENGTH));
+			for (int b = 0; b < CONTEXTS; b++) {
+				codes[t << 8 | b] = tables[t].getCode(b);
+				lengths[t << 8 | b] = (byte) tables[t].getLength(b);
+			}
+		}
+		int[] starts = new int[CONTEXTS];
+		for (int context = 0; context < CONTEXTS; context++)
+			starts[context] = Math.max(0, contextTables[context]) << 8;
+		EncodedBits bits = encodeBits(data, offset, length, starts, codes, lengths);
+
+		return CodeTable.frame(out -> {
+			out.writeInt(MAGIC);
+			out.writeLong(length);
+			CodeTable.writeVarInt(out, tables.length);
+			int used = 0;
+			for (int table : contextTables)
+				used += table >= 0 ? 1 : 0;
+			CodeTable.writeVarInt(out, used);
+			int previousContext = -1;
+			for (int context = 0; context < CONTEXTS; context++) {
+				if (contextTables[context] >= 0) {
+					CodeTable.writeVarInt(out, context - previousContext - 1);
+					CodeTable.writeVarInt(out, contextTables[context]);
+					previousContext = context;
+				}
+			}
+			for (CodeTable table : tables)
+				table.writeHeader(out);
+		}, bits);
+	}
+
+	/**
+	 * Restores the bytes compressed by encode().
+	 *
+	 * @throws IllegalArgumentException if the bytes are not compressed with
+	 *                                  contexts or are corrupt
+	 */
+	public static byte[] decode(byte[] data) throws IllegalArgumentException {
+		ByteArrayInputStream in = new ByteArrayInputStream(data);
+		DataInputStream header = new DataInputStream(in);
+		long total;
+		DecodeTable[] decoders = new DecodeTable[CONTEXTS];
+		try {
+			if (header.readInt() != MAGIC)
+				throw new IllegalArgumentException("Not compressed with contexts");
+			total = header.readLong();
+			int tableCount = CodeTable.readVarInt(header);
+			if (tableCount < 0 || tableCount > CONTEXTS)
+				throw new IllegalArgumentException("Invalid number of tables");
+
+			int used = CodeTable.readVarInt(header);
+			if (used < 0 || used > CONTEXTS)
+				throw new IllegalArgumentException("Invalid number of contexts");
+			int[] contexts = new int[used], contextTables = new int[used];
+			int context = -1;
+			for (int i = 0; i < used; i++) {
+				context += CodeTable.readVarInt(header) + 1;
+				contextTables[i] = CodeTable.readVarInt(header);
+				if (context < 0 || context >= CONTEXTS || contextTables[i] < 0 || contextTables[i] >= tableCount)
+					throw new IllegalArgumentException("Invalid context table");
+				contexts[i] = context;
+			}
+
+			DecodeTable[] tables = new DecodeTable[tableCount];
+			for (int t = 0; t < tableCount; t++) {
+				CodeTable table = CodeTable.readHeader(header, CONTEXTS);
+				if (table.alphabetSize() > CONTEXTS)
+					throw new IllegalArgumentException("Code table has symbols that are not bytes");
+				tables[t] = table.decodeTable();
+			}
+			for (int i = 0; i < used; i++)
+				decoders[contexts[i]] = tables[contextTables[i]];
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Invalid header", e);
+		}
+		if (total < 0 || total > CodeTable.MAX_ARRAY_SIZE)
+			throw new IllegalArgumentException("Invalid length");
+
+		byte[] result = new byte[(int) total];
+		if (total == 0)
+			return result;
+
+		long end = (long) data.length * 8;
+		BitReader bits = new BitReader(data, end);
+		bits.position((long) (data.length - in.available()) * 8);
+		int previous = 0;
+		for (int i = 0; i < result.length; i++) {
+			DecodeTable decoder = decoders[previous];
+			int symbol = decoder == null ? -1 : decoder.decodeSymbol(bits);
+			if (symbol < 0)
+				throw new IllegalArgumentException("Compressed data is corrupt");
+			result[i] = (byte) symbol;
+			previous = symbol;
+		}
+		if (bits.position() > end)
+			throw new IllegalArgumentException("Compressed data is truncated");
+		return result;
+	}
+
+	/**
+	 * Picks the table of every context: its own one when its bytes cost less
+	 * coded with their own codes, header included, than with the codes of all
+	 * the bytes together, and the shared one otherwise.
+	 *
+	 * @return The table number of every context, -1 for contexts no byte follows
+	 */
+	private static int[] chooseTables(long[] counts) {
+		long[] all = new long[CONTEXTS];
+		for (int i = 0; i < counts.length; i++)
+			all[i & 0xFF] += counts[i];
+		int[] allLengths = FlatHuffmanTree.codeLengths(all, CodeTable.MAX_CODE_LENGTH);
+
+		int[] contextTables = new int[CONTEXTS];
+		boolean[] own = new boolean[CONTEXTS];
+		boolean shared = false;
+		for (int context = 0; context < CONTEXTS; context++) {
+			long[] weights = Arrays.copyOfRange(counts, context << 8, (context + 1) << 8);
+			long sharedCost = 0;
+			for (int b = 0; b < CONTEXTS; b++)
+				sharedCost += weights[b] * allLengths[b];
+			if (sharedCost == 0) {
+				contextTables[context] = -1;
+				continue;
+			}
+
+			int[] lengths = FlatHuffmanTree.codeLengths(weights, CodeTable.MAX_CODE_LENGTH);
+			long ownCost = 8; // Table number
+			for (int b = 0; b < CONTEXTS; b++) {
+				if (weights[b] > 0)
+					ownCost += weights[b] * lengths[b] + 16; // Gap and length in the header
+			}
+			if (ownCost < sharedCost)
+				own[context] = true;
+			else
+				shared = true;
+		}
+
+		/* The shared table comes first, then one per context that has its own */
+		int next = shared ? 1 : 0;
+		for (int context = 0; context < CONTEXTS; context++) {
+			if (own[context])
+				contextTables[context] = next++;
+		}
+		return contextTables;
+	}
+
+	/* Same loop as CharEncoder's, with the codes of each byte taken from the table of the one before it */
+	private static EncodedBits encodeBits(byte[] data, int offset, int length, int[] starts, long[] codes,
+			byte[] lengths) {
+		BitWriter out = new BitWriter((length / 2 + 15) & ~7);
+		int start = starts[0];
+		for (int i = offset, end = offset + length; i < end; i++) {
+			int b = data[i] & 0xFF;
+			out.append(codes[start | b], lengths[start | b]);
+			start = starts[b];
+		}
+		return out.toEncodedBits();
+	}
+}
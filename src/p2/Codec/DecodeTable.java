@@ -0,0 +1,211 @@
+package p2.Codec;
+
+import java.util.Arrays;
+
+import p2.DataStructures.Map.Map;
+
+/**
+ * Table driven Huffman decoder.
+ *
+ * Instead of reading one bit at a time, the decoder peeks the next k bits and
+ * resolves both the symbol and the length of its code with a single array
+ * lookup. Codes longer than k bits are resolved through second level tables
+ * (and so on), each one indexed by the bits that follow, like zlib's inflate.
+ *
+ * Every entry of the flat table is an int:
+ * - leaf: (symbol << 6) | bits consumed at that level (never 0)
+ * - link: ~((offset of the sub table << 5) | bits of the sub table), negative
+ * - 0: the bits do not start any code
+ */
+public class DecodeTable {
+
+	public static final int DEFAULT_LOOKUP_BITS = 11;
+	private static final int MAX_LOOKUP_BITS = 20;
+
+	private final int rootBits;
+	private final int maxLength;
+	private final int minLength;
+	private int[] table;
+	private int tableSize;
+
+	/* Binary trie of the codes used while building the tables */
+	private int[] children;
+	private int[] height;
+
+	/**
+	 * Builds the decoding tables for a set of prefix codes.
+	 *
+	 * @param codes      code word of every symbol, right aligned
+	 * @param lengths    code length of every symbol, 0 if the symbol has no code
+	 * @param lookupBits bits resolved by the first level table
+	 */
+	public DecodeTable(long[] codes, int[] lengths, int lookupBits) {
+		if (codes == null || lengths == null || codes.length < lengths.length)
+			throw new IllegalArgumentException("There must be a code for every length");
+		if (lookupBits < 1 || lookupBits > MAX_LOOKUP_BITS)
+			throw new IllegalArgumentException("Lookup bits must be between 1 and " + MAX_LOOKUP_BITS);
+
+		int max = 0, min = Integer.MAX_VALUE, symbols = 0;
+		for (int length : lengths) {
+			if (length < 0 || length > 64)
+				throw new IllegalArgumentException("Code lengths must be between 0 and 64");
+			if (length > 0) {
+				max = Math.max(max, length);
+				min = Math.min(min, length);
+				symbols++;
+			}
+		}
+		maxLength = max;
+		minLength = max == 0 ? 0 : min;
+		rootBits = Math.max(1, Math.min(lookupBits, maxLength));
+
+		buildTrie(codes, lengths, symbols);
+		table = new int[1 << rootBits];
+		tableSize = table.length;
+		fillTable(0, 0, rootBits);
+
+		/* Only the tables are needed to decode */
+		children = null;
+		height = null;
+		table = Arrays.copyOf(table, tableSize);
+	}
+
+	public DecodeTable(long[] codes, int[] lengths) {
+		this(codes, lengths, DEFAULT_LOOKUP_BITS);
+	}
+
+	/**
+	 * Numbers the symbols of a map made by huffman_code() and builds the table
+	 * that decodes their codes into those numbers.
+	 *
+	 * @param lookupTable Map from every symbol to its code as a String
+	 * @param names       array with room for every symbol, filled with the symbol
+	 *                    of each number
+	 * @return The decoder
+	 */
+	public static DecodeTable of(Map<String, String> lookupTable, String[] names) {
+		long[] codes = new long[names.length];
+		int[] lengths = new int[names.length];
+
+		/* Number each symbol and turn its prefix code into a code word and a length */
+		int index = 0;
+		for (String symbol : lookupTable.getKeys()) {
+			String code = lookupTable.get(symbol);
+			names[index] = symbol;
+			lengths[index] = code.length();
+			for (int j = 0; j < code.length(); j++)
+				codes[index] = (codes[index] << 1) | (code.charAt(j) == '1' ? 1 : 0);
+			index++;
+		}
+		return new DecodeTable(codes, lengths);
+	}
+
+	/**
+	 * Decodes the next symbol.
+	 *
+	 * @param in reader positioned at the start of a code
+	 * @return The symbol, or -1 if the bits do not start any code (the reader is
+	 *         left where it was)
+	 */
+	public int decodeSymbol(BitReader in) {
+		int entry = table[(int) in.peekBits(rootBits)];
+		if (entry < 0) {
+			long start = in.position();
+			int bits = rootBits;
+			do {
+				in.skipBits(bits);
+				int link = ~entry;
+				bits = link & 31;
+				entry = table[(link >>> 5) + (int) in.peekBits(bits)];
+			} while (entry < 0);
+			if (entry == 0) {
+				in.position(start);
+				return -1;
+			}
+		} else if (entry == 0) {
+			return -1;
+		}
+		in.skipBits(entry & 63);
+		return entry >>> 6;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	public int getMinLength() {
+		return minLength;
+	}
+
+	private void buildTrie(long[] codes, int[] lengths, int symbols) {
+		/*
+		 * children[2 * node + bit], 0 means no child; leaves are -(symbol + 1). A
+		 * complete code has one node less than it has symbols, others can have more,
+		 * so the arrays grow when they run out
+		 */
+		children = new int[2 * Math.max(1, symbols)];
+		height = new int[children.length / 2];
+		int nodeCount = 1;
+		for (int symbol = 0; symbol < lengths.length; symbol++) {
+			int length = lengths[symbol];
+			int node = 0;
+			for (int j = length - 1; j >= 0; j--) {
+				height[node] = Math.max(height[node], j + 1);
+				int slot = 2 * node + (int) ((codes[symbol] >>> j) & 1);
+				if (j == 0) {
+					if (children[slot] != 0)
+						throw new IllegalArgumentException("Codes are not prefix free");
+					children[slot] = -(symbol + 1);
+				} else {
+					if (children[slot] < 0)
+						throw new IllegalArgumentException("Codes are not prefix free");
+					if (children[slot] == 0) {
+						if (nodeCount == height.length) {
+							height = Arrays.copyOf(height, height.length * 2);
+							children = Arrays.copyOf(children, children.length * 2);
+						}
+						children[slot] = nodeCount++;
+					}
+					node = children[slot];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fills the table at offset, indexed by the next bits bits after reaching
+	 * node of the trie.
+	 */
+	private void fillTable(int offset, int node, int bits) {
+		for (int pattern = 0; pattern < (1 << bits); pattern++) {
+			int current = node;
+			int entry = 0;
+			for (int j = bits - 1; j >= 0; j--) {
+				int next = children[2 * current + ((pattern >>> j) & 1)];
+				if (next < 0) {
+					entry = ((-next - 1) << 6) | (bits - j);
+					break;
+				}
+				if (next == 0)
+					break;
+				current = next;
+				if (j == 0) {
+					/* The code continues past this level, link to a sub table */
+					int subBits = Math.min(rootBits, height[current]);
+					int subOffset = allocate(1 << subBits);
+					fillTable(subOffset, current, subBits);
+					entry = ~((subOffset << 5) | subBits);
+				}
+			}
+			table[offset + pattern] = entry;
+		}
+	}
+
+	private int allocate(int size) {
+		if (tableSize + size > table.length)
+			table = Arrays.copyOf(table, Math.max(table.length * 2, tableSize + size));
+		int offset = tableSize;
+		tableSize += size;
+		return offset;
+	}
+}
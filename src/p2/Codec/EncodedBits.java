@@ -0,0 +1,77 @@
+package p2.Codec;
+
+/**
+ * Bit-packed result of encoding a string with Huffman prefix codes.
+ *
+ * Bits are stored most significant bit first, 8 per byte, and the exact number
+ * of meaningful bits is kept since the last byte may be padded with zeros.
+ */
+public class EncodedBits {
+
+	private final byte[] data;
+	private final long bitLength;
+
+	public EncodedBits(byte[] data, long bitLength) {
+		if (data == null)
+			throw new IllegalArgumentException("Data cannot be null");
+		if (bitLength < 0 || (bitLength + 7) / 8 > data.length)
+			throw new IllegalArgumentException("Bit length does not fit in the data");
+		this.data = data;
+		this.bitLength = bitLength;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public long getBitLength() {
+		return bitLength;
+	}
+
+	/**
+	 * Exact number of bytes needed to store the encoded bits.
+	 *
+	 * @return bit length rounded up to whole bytes
+	 */
+	public long getByteLength() {
+		return (bitLength + 7) / 8;
+	}
+
+	/**
+	 * Returns the bits as a string of '0' and '1' characters, the same form
+	 * HuffmanCoding.encode() produces. Meant for printing small results.
+	 *
+	 * @return String with one character per bit
+	 */
+	public String toBitString() {
+		StringBuilder result = new StringBuilder((int) bitLength);
+		for (long i = 0; i < bitLength; i++)
+			result.append((data[(int) (i >>> 3)] >>> (7 - (i & 7)) & 1) == 0 ? '0' : '1');
+		return result.toString();
+	}
+
+	/**
+	 * Packs a string of '0' and '1' characters, such as the one returned by
+	 * HuffmanCoding.encode().
+	 *
+	 * @param bits   String with one character per bit
+	 * @param length number of characters to pack from the start of bits
+	 * @return The packed bits
+	 * @throws IllegalArgumentException if the string has any other character
+	 */
+	public static EncodedBits fromBitString(String bits, int length) throws IllegalArgumentException {
+		byte[] data = new byte[(length + 7) / 8];
+		for (int i = 0; i < length; i++) {
+			char c = bits.charAt(i);
+			if (c == '1')
+				data[i >>> 3] |= 1 << (7 - (i & 7));
+			else if (c != '0')
+				throw new IllegalArgumentException("Not a bit: '" + c + "'");
+		}
+		return new EncodedBits(data, length);
+	}
+
+	public static EncodedBits fromBitString(String bits) throws IllegalArgumentException {
+		return fromBitString(bits, bits.length());
+	}
+}
@@ -0,0 +1,125 @@
+package p2.Codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Input encoded as independent blocks that share one code table.
+ *
+ * Every block starts on a byte boundary of data and the index keeps the bit
+ * offset where each block starts and how many bits it has, so any block can be
+ * decoded without reading the ones before it.
+ *
+ * Serialized layout: block size, input length, number of blocks, the (bit
+ * offset, bit length) pair of every block, number of data bytes and the data.
+ */
+public class EncodedBlocks {
+
+	private final byte[] data;
+	private final long[] bitOffsets;
+	private final long[] bitLengths;
+	private final int blockSize;
+	private final int length;
+
+	public EncodedBlocks(byte[] data, long[] bitOffsets, long[] bitLengths, int blockSize, int length) {
+		if (data == null || bitOffsets == null || bitLengths == null)
+			throw new IllegalArgumentException("Data and index cannot be null");
+		if (bitOffsets.length != bitLengths.length)
+			throw new IllegalArgumentException("Every block needs an offset and a length");
+		if (blockSize < 1 || length < 0)
+			throw new IllegalArgumentException("Block size must be at least 1");
+		if (bitOffsets.length != blockCount(length, blockSize))
+			throw new IllegalArgumentException("Number of blocks does not match the length");
+		this.data = data;
+		this.bitOffsets = bitOffsets;
+		this.bitLengths = bitLengths;
+		this.blockSize = blockSize;
+		this.length = length;
+	}
+
+	/**
+	 * @return Number of blocks of blockSize symbols needed for length symbols,
+	 *         without overflowing for any block size
+	 */
+	public static int blockCount(int length, int blockSize) {
+		return length / blockSize + (length % blockSize != 0 ? 1 : 0);
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public int getBlockCount() {
+		return bitOffsets.length;
+	}
+
+	/**
+	 * @return Symbols encoded per block, the last block can have fewer
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * @return Number of symbols encoded in all blocks
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	public long getBitOffset(int block) {
+		return bitOffsets[block];
+	}
+
+	/**
+	 * @return Number of meaningful bits in the block
+	 */
+	public long getBitLength(int block) {
+		return bitLengths[block];
+	}
+
+	/**
+	 * @return Number of symbols encoded in the block
+	 */
+	public int getBlockLength(int block) {
+		return (int) Math.min(blockSize, length - (long) block * blockSize);
+	}
+
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(blockSize);
+		out.writeInt(length);
+		out.writeInt(getBlockCount());
+		for (int i = 0; i < bitOffsets.length; i++) {
+			out.writeLong(bitOffsets[i]);
+			out.writeLong(bitLengths[i]);
+		}
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	/**
+	 * Reads blocks written by write().
+	 *
+	 * @throws IOException if the stream cannot be read or does not hold blocks
+	 */
+	public static EncodedBlocks read(DataInputStream in) throws IOException {
+		int blockSize = in.readInt();
+		int length = in.readInt();
+		int blockCount = in.readInt();
+		if (blockSize < 1 || length < 0 || blockCount != blockCount(length, blockSize))
+			throw new IOException("Invalid block index");
+		long[] bitOffsets = new long[blockCount];
+		long[] bitLengths = new long[blockCount];
+		for (int i = 0; i < blockCount; i++) {
+			bitOffsets[i] = in.readLong();
+			bitLengths[i] = in.readLong();
+		}
+		int size = in.readInt();
+		if (size < 0)
+			throw new IOException("Invalid data length");
+		byte[] data = new byte[size];
+		in.readFully(data);
+		return new EncodedBlocks(data, bitOffsets, bitLengths, blockSize, length);
+	}
+}
@@ -0,0 +1,332 @@
+package p2.Codec;
+
+import java.util.Arrays;
+
+import p2.DataStructures.List.List;
+import p2.DataStructures.Map.Map;
+import p2.Utils.BinaryTreePrinter.PrintableNode;
+
+/**
+ * Huffman tree stored as parallel arrays indexed by node number, instead of one
+ * BTNode object per node.
+ *
+ * The leaves are nodes 0 to n - 1, sorted by weight, and the internal nodes
+ * follow in the order they are merged, so the root is the last node and every
+ * child has a smaller number than its parent. That lets code generation visit
+ * the whole tree from the root down with a plain loop, no recursion and no
+ * stack. Internal nodes only hold the sum of their weights: the concatenated
+ * symbols huffman_tree() keeps at every node are never built.
+ *
+ * Since the leaves come sorted, the tree is built with two queues in linear
+ * time: the next node to merge is always the lighter of the next leaf and the
+ * next internal node, taking the leaf on ties.
+ */
+public class FlatHuffmanTree {
+
+	private final long[] weight;
+	private final int[] left; // -1 for leaves
+	private final int[] right;
+	private final int[] symbol; // symbol of each leaf, -1 for internal nodes
+	private final String[] names; // name of each symbol, null to name them after the char with their value
+	private final int leafCount;
+
+	/**
+	 * Builds the tree for a frequency distribution, like huffman_tree().
+	 *
+	 * @param frequencyDistribution frequency of every symbol, negative ones count
+	 *                              as 0
+	 * @return The tree, null if the map is null or empty
+	 */
+	public static FlatHuffmanTree of(Map<String, Integer> frequencyDistribution) {
+		if (frequencyDistribution == null || frequencyDistribution.isEmpty())
+			return null;
+
+		List<String> keys = frequencyDistribution.getKeys();
+		String[] names = new String[keys.size()];
+		long[] weights = new long[names.length];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = keys.get(i);
+			weights[i] = Math.max(0, frequencyDistribution.get(names[i]));
+		}
+		return new FlatHuffmanTree(names, weights);
+	}
+
+	/**
+	 * Builds the tree for symbols 0 to weights.length - 1.
+	 *
+	 * @param names   name of every symbol, as used by codes(), or null to name
+	 *                each symbol after the char with the same value
+	 * @param weights weight of every symbol, all of them get a code
+	 */
+	public FlatHuffmanTree(String[] names, long[] weights) {
+		if (weights.length == 0)
+			throw new IllegalArgumentException("There must be at least one symbol");
+		if (names != null && names.length != weights.length)
+			throw new IllegalArgumentException("There must be a name for every symbol");
+
+		int n = weights.length;
+		leafCount = n;
+		int nodes = 2 * n - 1;
+		weight = new long[nodes];
+		left = new int[nodes];
+		right = new int[nodes];
+		symbol = new int[nodes];
+		this.names = names;
+
+		/* Leaves sorted by weight, then by symbol so the same input always gives the same tree */
+		int[] order = sortByWeight(weights);
+		for (int i = 0; i < n; i++) {
+			weight[i] = weights[order[i]];
+			left[i] = right[i] = -1;
+			symbol[i] = order[i];
+		}
+
+		/* Two queues: leaves from nextLeaf, internal nodes from nextInternal up to the last one made */
+		int nextLeaf = 0, nextInternal = n;
+		for (int node = n; node < nodes; node++) {
+			int first, second;
+			if (nextInternal >= node || (nextLeaf < n && weight[nextLeaf] <= weight[nextInternal]))
+				first = nextLeaf++;
+			else
+				first = nextInternal++;
+			if (nextInternal >= node || (nextLeaf < n && weight[nextLeaf] <= weight[nextInternal]))
+				second = nextLeaf++;
+			else
+				second = nextInternal++;
+
+			left[node] = first;
+			right[node] = second;
+			symbol[node] = -1;
+			weight[node] = weight[first] + weight[second];
+		}
+	}
+
+	/**
+	 * Huffman code lengths for symbols 0 to weights.length - 1, or the best ones
+	 * no longer than maxLength if the tree is deeper than that, like
+	 * LengthLimitedCodes.lengths().
+	 *
+	 * @return The code length of every symbol, 0 for the ones whose weight is 0
+	 */
+	public static int[] codeLengths(long[] weights, int maxLength) {
+		int[] lengths = new int[weights.length];
+		int n = 0;
+		for (long weight : weights) {
+			if (weight > 0)
+				n++;
+		}
+		if (n == 0)
+			return lengths;
+
+		/* The tree only holds the symbols that appear */
+		int[] present = new int[n];
+		long[] presentWeights = new long[n];
+		for (int symbol = 0, i = 0; symbol < weights.length; symbol++) {
+			if (weights[symbol] > 0) {
+				present[i] = symbol;
+				presentWeights[i++] = weights[symbol];
+			}
+		}
+		int[] depths = new FlatHuffmanTree(null, presentWeights).leafDepths();
+		for (int i = 0; i < n; i++) {
+			if (depths[i] > maxLength)
+				return LengthLimitedCodes.lengths(weights, maxLength);
+			lengths[present[i]] = depths[i];
+		}
+		return lengths;
+	}
+
+	/*
+	 * Symbols in order of (weight, symbol). Packing both in a long and sorting
+	 * primitives is much faster than a comparator, and works unless some weight
+	 * needs more than the bits left by the symbol.
+	 */
+	private static int[] sortByWeight(long[] weights) {
+		int n = weights.length;
+		int symbolBits = 32 - Integer.numberOfLeadingZeros(n);
+		long maxWeight = 0;
+		for (long w : weights) {
+			if (w < 0)
+				throw new IllegalArgumentException("Weights cannot be negative");
+			maxWeight = Math.max(maxWeight, w);
+		}
+
+		int[] order = new int[n];
+		if ((maxWeight >>> (63 - symbolBits)) == 0) {
+			long[] keys = new long[n];
+			for (int i = 0; i < n; i++)
+				keys[i] = weights[i] << symbolBits | i;
+			Arrays.sort(keys);
+			for (int i = 0; i < n; i++)
+				order[i] = (int) (keys[i] & ((1L << symbolBits) - 1));
+		} else {
+			Integer[] boxed = new Integer[n];
+			for (int i = 0; i < n; i++)
+				boxed[i] = i;
+			Arrays.sort(boxed, (a, b) -> weights[a] != weights[b] ? Long.compare(weights[a], weights[b]) : a - b);
+			for (int i = 0; i < n; i++)
+				order[i] = boxed[i];
+		}
+		return order;
+	}
+
+	/**
+	 * @return Number of nodes in the tree
+	 */
+	public int size() {
+		return weight.length;
+	}
+
+	/**
+	 * @return Number of symbols, one per leaf
+	 */
+	public int symbolCount() {
+		return leafCount;
+	}
+
+	public int root() {
+		return weight.length - 1;
+	}
+
+	public long weight(int node) {
+		return weight[node];
+	}
+
+	public int left(int node) {
+		return left[node];
+	}
+
+	public int right(int node) {
+		return right[node];
+	}
+
+	public boolean isLeaf(int node) {
+		return left[node] < 0;
+	}
+
+	/**
+	 * @return The symbol of a leaf, -1 for internal nodes
+	 */
+	public int symbol(int node) {
+		return symbol[node];
+	}
+
+	public String name(int symbol) {
+		return names == null ? String.valueOf((char) symbol) : names[symbol];
+	}
+
+	/**
+	 * Depth of the leaf of every symbol, which is the length of its code, with no
+	 * limit on how deep the tree is. A single leaf gets depth 1, like its code
+	 * "0".
+	 *
+	 * @return The depth of every symbol's leaf
+	 */
+	public int[] leafDepths() {
+		int[] result = new int[leafCount];
+		if (leafCount == 1) {
+			result[symbol[0]] = 1;
+			return result;
+		}
+
+		/* Parents come after their children, so a node's depth is known before its children's */
+		int[] depth = new int[weight.length];
+		for (int node = root(); node >= 0; node--) {
+			if (isLeaf(node))
+				result[symbol[node]] = depth[node];
+			else
+				depth[left[node]] = depth[right[node]] = depth[node] + 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Generates the prefix code of every symbol, the same way huffman_code() does
+	 * for a BTNode tree: 0 for left, 1 for right, and "0" when there is a single
+	 * symbol.
+	 *
+	 * @return Map from the name of every symbol to its code
+	 */
+	public Map<String, String> codes() {
+		return symbolCodes().toMap();
+	}
+
+	/**
+	 * @return The code of every symbol as a long code word and a length
+	 */
+	public SymbolCodes symbolCodes() {
+		return SymbolCodes.of(this);
+	}
+
+	/**
+	 * Decodes the next symbol by walking the tree from the root, one bit at a
+	 * time.
+	 *
+	 * @return The symbol, or -1 if the bits run out before reaching a leaf
+	 */
+	public int decodeSymbol(BitReader bits) {
+		if (leafCount == 1) {
+			if (!bits.hasMore())
+				return -1;
+			bits.readBit();
+			return symbol[0];
+		}
+
+		int node = root();
+		while (!isLeaf(node)) {
+			if (!bits.hasMore())
+				return -1;
+			node = bits.readBit() == 0 ? left[node] : right[node];
+		}
+		return symbol[node];
+	}
+
+	/**
+	 * Decodes packed bits into the names of the symbols, like decode_bits().
+	 *
+	 * @throws IllegalArgumentException if the bits end in the middle of a code
+	 */
+	public String decode(EncodedBits encoded) throws IllegalArgumentException {
+		StringBuilder result = new StringBuilder();
+		BitReader bits = new BitReader(encoded);
+		while (bits.hasMore()) {
+			int s = decodeSymbol(bits);
+			if (s < 0)
+				throw new IllegalArgumentException("Encoded bits end in the middle of a code");
+			result.append(name(s));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * A view of the tree for BinaryTreePrinter. Leaves print as weight:symbol,
+	 * internal nodes as their weight only.
+	 */
+	public PrintableNode printable() {
+		return new Node(root());
+	}
+
+	private class Node implements PrintableNode {
+
+		private final int node;
+
+		Node(int node) {
+			this.node = node;
+		}
+
+		@Override
+		public PrintableNode getLeft() {
+			return isLeaf(node) ? null : new Node(left[node]);
+		}
+
+		@Override
+		public PrintableNode getRight() {
+			return isLeaf(node) ? null : new Node(right[node]);
+		}
+
+		@Override
+		public String getText() {
+			return isLeaf(node) ? weight[node] + ":" + name(symbol[node]) : Long.toString(weight[node]);
+		}
+	}
+}
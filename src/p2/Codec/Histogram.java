@@ -0,0 +1,235 @@
+package p2.Codec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import p2.DataStructures.Map.HashTableOA;
+import p2.DataStructures.Map.Map;
+
+/**
+ * Frequency distribution of symbols stored as a flat array of counts indexed by
+ * symbol value.
+ *
+ * Counting bytes or chars into it does not allocate anything nor hash any key;
+ * the result is adapted to the Map used by huffman_tree() only at the end, with
+ * toFrequencyMap().
+ */
+public class Histogram {
+
+	public static final int BYTE_ALPHABET = 256;
+	public static final int CHAR_ALPHABET = 65536;
+
+	/* Bytes counted into the int tables before moving them to counts, so they cannot overflow */
+	private static final int BLOCK_SIZE = 1 << 24;
+
+	/* Bytes copied out of a direct buffer at a time, small enough to stay in the cache */
+	private static final int DIRECT_CHUNK_SIZE = 1 << 16;
+
+	private long[] counts;
+	private long total;
+	private int[][] scratch; // four int tables used by addBytes(), allocated once
+
+	public Histogram(int alphabetSize) {
+		if (alphabetSize < 1)
+			throw new IllegalArgumentException("Alphabet size must be at least 1");
+		counts = new long[alphabetSize];
+		total = 0;
+	}
+
+	public Histogram() {
+		this(BYTE_ALPHABET);
+	}
+
+	public static Histogram ofBytes(byte[] data, int offset, int length) {
+		Histogram result = new Histogram(BYTE_ALPHABET);
+		result.addBytes(data, offset, length);
+		return result;
+	}
+
+	public static Histogram ofBytes(byte[] data) {
+		return ofBytes(data, 0, data.length);
+	}
+
+	public static Histogram ofChars(CharSequence text) {
+		Histogram result = new Histogram(BYTE_ALPHABET);
+		result.addChars(text);
+		return result;
+	}
+
+	/**
+	 * Counts one more occurrence of symbol, growing the alphabet if needed.
+	 *
+	 * @param symbol symbol value, at least 0
+	 */
+	public void add(int symbol) {
+		if (symbol >= counts.length)
+			grow(symbol + 1);
+		counts[symbol]++;
+		total++;
+	}
+
+	/**
+	 * Counts length bytes of data starting at offset.
+	 *
+	 * The bytes are spread over four int tables so consecutive equal bytes do not
+	 * wait on each other's increment, which is what limits a single table.
+	 */
+	public void addBytes(byte[] data, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > data.length)
+			throw new IndexOutOfBoundsException("Range is outside of the array");
+		if (counts.length < BYTE_ALPHABET)
+			grow(BYTE_ALPHABET);
+
+		if (scratch == null)
+			scratch = new int[4][BYTE_ALPHABET];
+		int[] c0 = scratch[0], c1 = scratch[1], c2 = scratch[2], c3 = scratch[3];
+		int end = offset + length;
+		for (int start = offset; start < end; start += BLOCK_SIZE) {
+			int blockEnd = (int) Math.min(end, (long) start + BLOCK_SIZE);
+			int i = start;
+			for (; i + 4 <= blockEnd; i += 4) {
+				c0[data[i] & 0xFF]++;
+				c1[data[i + 1] & 0xFF]++;
+				c2[data[i + 2] & 0xFF]++;
+				c3[data[i + 3] & 0xFF]++;
+			}
+			for (; i < blockEnd; i++)
+				c0[data[i] & 0xFF]++;
+
+			for (int s = 0; s < BYTE_ALPHABET; s++) {
+				counts[s] += (long) c0[s] + c1[s] + c2[s] + c3[s];
+				c0[s] = c1[s] = c2[s] = c3[s] = 0;
+			}
+		}
+		total += length;
+	}
+
+	/**
+	 * Counts the remaining bytes of the buffer, leaving its position at the limit.
+	 */
+	public void addBytes(ByteBuffer buffer) {
+		if (buffer.hasArray()) {
+			addBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			buffer.position(buffer.limit());
+			return;
+		}
+
+		/* Direct and mapped buffers are copied out in chunks and counted like an array */
+		byte[] chunk = new byte[Math.min(buffer.remaining(), DIRECT_CHUNK_SIZE)];
+		while (buffer.hasRemaining()) {
+			int length = Math.min(buffer.remaining(), chunk.length);
+			buffer.get(chunk, 0, length);
+			addBytes(chunk, 0, length);
+		}
+	}
+
+	/**
+	 * Counts every char of the text. The alphabet starts with 256 symbols and
+	 * grows to all 65536 chars the first time one above 255 shows up.
+	 */
+	public void addChars(CharSequence text) {
+		addChars(text, 0, text.length());
+	}
+
+	/**
+	 * Counts the chars of the text from index from (inclusive) to index to
+	 * (exclusive).
+	 */
+	public void addChars(CharSequence text, int from, int to) {
+		if (from < 0 || from > to || to > text.length())
+			throw new IndexOutOfBoundsException("Range is outside of the text");
+		long[] c = counts;
+		for (int i = from; i < to; i++) {
+			char ch = text.charAt(i);
+			if (ch >= c.length) {
+				grow(CHAR_ALPHABET);
+				c = counts;
+			}
+			c[ch]++;
+		}
+		total += to - from;
+	}
+
+	/**
+	 * Adds all the counts of another histogram to this one.
+	 */
+	public void merge(Histogram other) {
+		if (other.counts.length > counts.length)
+			grow(other.counts.length);
+		for (int s = 0; s < other.counts.length; s++)
+			counts[s] += other.counts[s];
+		total += other.total;
+	}
+
+	public long count(int symbol) {
+		return symbol < counts.length ? counts[symbol] : 0;
+	}
+
+	/**
+	 * The counts themselves, indexed by symbol. Callers must not modify them.
+	 *
+	 * @return Array with the count of every symbol in the alphabet
+	 */
+	public long[] getCounts() {
+		return counts;
+	}
+
+	public int alphabetSize() {
+		return counts.length;
+	}
+
+	/**
+	 * @return Total number of symbols counted
+	 */
+	public long total() {
+		return total;
+	}
+
+	/**
+	 * @return Number of different symbols counted at least once
+	 */
+	public int distinct() {
+		int result = 0;
+		for (long count : counts) {
+			if (count > 0)
+				result++;
+		}
+		return result;
+	}
+
+	/**
+	 * Adapts the histogram to the frequency distribution map used by the rest of
+	 * the pipeline. Symbols that get the same name have their counts added.
+	 *
+	 * @param symbolName name of the symbol with the given value in the map
+	 * @return Map from symbol name to frequency
+	 * @throws IllegalStateException if a frequency does not fit in an Integer
+	 */
+	public Map<String, Integer> toFrequencyMap(IntFunction<String> symbolName) {
+		Map<String, Integer> result = new HashTableOA<>();
+		for (int s = 0; s < counts.length; s++) {
+			if (counts[s] == 0)
+				continue;
+			String name = symbolName.apply(s);
+			Integer previous = result.get(name);
+			long frequency = counts[s] + (previous == null ? 0 : previous);
+			if (frequency > Integer.MAX_VALUE)
+				throw new IllegalStateException("Frequency of '" + name + "' does not fit in an Integer");
+			result.put(name, (int) frequency);
+		}
+		return result;
+	}
+
+	/**
+	 * Same as toFrequencyMap(symbolName), naming every symbol after the char with
+	 * the same value.
+	 */
+	public Map<String, Integer> toFrequencyMap() {
+		return toFrequencyMap(s -> String.valueOf((char) s));
+	}
+
+	private void grow(int alphabetSize) {
+		counts = Arrays.copyOf(counts, alphabetSize);
+	}
+}
@@ -0,0 +1,161 @@
+package p2.Codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes a String as 4 separate Huffman bitstreams, one per quarter of the
+ * input, like Huff0 in Zstandard.
+ *
+ * A single bitstream is one long chain of dependencies: where a code starts is
+ * only known once the one before it is decoded. With 4 streams the decoder
+ * keeps a BitReader per stream and decodes one symbol from each of them per
+ * loop iteration, so the processor can work on 4 independent chains at once.
+ *
+ * The data starts with a header of 4 big-endian ints: the number of symbols,
+ * then the byte length of the first 3 streams. The streams follow, each one
+ * starting on a new byte, and the last one runs to the end of the data.
+ */
+public class InterleavedStreams {
+
+	public static final int STREAMS = 4;
+
+	private static final int HEADER_SIZE = STREAMS * Integer.BYTES;
+
+	/**
+	 * Encodes the input as 4 streams.
+	 *
+	 * @param encoder codes of every char of the input
+	 * @param input   String to encode
+	 * @return The header and the streams, as whole bytes
+	 * @throws IllegalArgumentException if a char has no code
+	 */
+	public static EncodedBits encode(CharEncoder encoder, String input) throws IllegalArgumentException {
+		int segment = segment(input.length());
+		EncodedBits[] streams = new EncodedBits[STREAMS];
+		long size = HEADER_SIZE;
+		for (int i = 0; i < STREAMS; i++) {
+			int start = Math.min(input.length(), i * segment);
+			streams[i] = encoder.encode(input, start, Math.min(input.length(), start + segment));
+			size += streams[i].getByteLength();
+		}
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Encoded input does not fit in an array");
+
+		ByteBuffer out = ByteBuffer.allocate((int) size);
+		out.putInt(input.length());
+		for (int i = 0; i < STREAMS - 1; i++)
+			out.putInt((int) streams[i].getByteLength());
+		for (EncodedBits stream : streams)
+			out.put(stream.getData(), 0, (int) stream.getByteLength());
+		return new EncodedBits(out.array(), size * 8);
+	}
+
+	/**
+	 * Decodes the streams written by encode().
+	 *
+	 * @param encoded header and streams
+	 * @param table   decoding table of the codes used to encode
+	 * @param names   the String each symbol of the table decodes to
+	 * @return The decoded String
+	 * @throws IllegalArgumentException if the header is not valid or a stream does
+	 *                                  not decode to its symbols
+	 */
+	public static String decode(EncodedBits encoded, DecodeTable table, String[] names)
+			throws IllegalArgumentException {
+		byte[] data = encoded.getData();
+		if (encoded.getByteLength() < HEADER_SIZE)
+			throw new IllegalArgumentException("Encoded bits are too short for the stream header");
+
+		ByteBuffer header = ByteBuffer.wrap(data);
+		int length = header.getInt();
+		if (length < 0)
+			throw new IllegalArgumentException("Invalid number of symbols");
+		long[] ends = new long[STREAMS];
+		long end = HEADER_SIZE;
+		for (int i = 0; i < STREAMS; i++) {
+			int streamSize = i < STREAMS - 1 ? header.getInt() : 0;
+			end = i < STREAMS - 1 ? end + streamSize : encoded.getByteLength();
+			if (streamSize < 0 || end > encoded.getByteLength())
+				throw new IllegalArgumentException("Stream sizes do not match the encoded bits");
+			ends[i] = end * 8;
+		}
+
+		/* Every symbol takes at least the shortest code, so a stream cannot hold more than that */
+		int segment = segment(length);
+		long minLength = Math.max(1, table.getMinLength());
+		for (int stream = 0; stream < STREAMS; stream++) {
+			long count = Math.max(0, Math.min(segment, length - (long) stream * segment));
+			long start = stream == 0 ? HEADER_SIZE * 8 : ends[stream - 1];
+			if (count * minLength > ends[stream] - start)
+				throw new IllegalArgumentException("Number of symbols does not match the encoded bits");
+		}
+
+		/* A reader per stream, each starting where the one before ends */
+		BitReader r0 = reader(data, HEADER_SIZE * 8, ends[0]);
+		BitReader r1 = reader(data, ends[0], ends[1]);
+		BitReader r2 = reader(data, ends[1], ends[2]);
+		BitReader r3 = reader(data, ends[2], ends[3]);
+
+		int last = length - (STREAMS - 1) * segment; // symbols in the last stream, at most segment
+		int[] symbols = new int[length];
+		int i = 0;
+		for (; i < Math.max(0, last); i++) {
+			int s0 = table.decodeSymbol(r0);
+			int s1 = table.decodeSymbol(r1);
+			int s2 = table.decodeSymbol(r2);
+			int s3 = table.decodeSymbol(r3);
+			if ((s0 | s1 | s2 | s3) < 0)
+				throw new IllegalArgumentException("Encoded bits contain a code that is not in the lookup table");
+			symbols[i] = s0;
+			symbols[segment + i] = s1;
+			symbols[2 * segment + i] = s2;
+			symbols[3 * segment + i] = s3;
+		}
+
+		/* The first streams may have a few symbols more than the last one */
+		BitReader[] readers = { r0, r1, r2, r3 };
+		for (int stream = 0; stream < STREAMS; stream++) {
+			int count = Math.max(0, Math.min(segment, length - stream * segment));
+			for (int j = i; j < count; j++) {
+				int symbol = table.decodeSymbol(readers[stream]);
+				if (symbol < 0)
+					throw new IllegalArgumentException("Encoded bits contain a code that is not in the lookup table");
+				symbols[stream * segment + j] = symbol;
+			}
+			if (readers[stream].position() > ends[stream])
+				throw new IllegalArgumentException("Encoded bits end in the middle of a code");
+		}
+
+		return toString(symbols, names);
+	}
+
+	/* Joins the names of the symbols, straight into a char array when every name is a single char */
+	private static String toString(int[] symbols, String[] names) {
+		char[] alphabet = new char[names.length];
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].length() != 1) {
+				StringBuilder result = new StringBuilder(symbols.length);
+				for (int symbol : symbols)
+					result.append(names[symbol]);
+				return result.toString();
+			}
+			alphabet[i] = names[i].charAt(0);
+		}
+
+		char[] result = new char[symbols.length];
+		for (int i = 0; i < symbols.length; i++)
+			result[i] = alphabet[symbols[i]];
+		return new String(result);
+	}
+
+	/* Symbols in each of the first streams; the last one gets whatever is left */
+	private static int segment(int length) {
+		return length / STREAMS + (length % STREAMS != 0 ? 1 : 0);
+	}
+
+	private static BitReader reader(byte[] data, long start, long end) {
+		BitReader reader = new BitReader(data, end);
+		reader.position(start);
+		return reader;
+	}
+}
@@ -0,0 +1,350 @@
+package p2.Codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * DEFLATE style compression: LZ77 replaces every repeated string with the
+ * length and distance of an earlier copy, then the literals and lengths go
+ * through one Huffman table and the distances through another, both built by
+ * huffman_tree() and huffman_code() like the tables of StreamCompressor.
+ *
+ * Matches are found through hash chains, as in zlib: the 3 bytes at every
+ * position are hashed, head holds the latest position of every hash and prev
+ * links every position to the previous one with the same hash, within the
+ * window. The effort level (1 to 9) sets how many positions of a chain are
+ * tried, when a match is long enough to stop looking, and from level 4 on up
+ * to which length a match is put off when the next position has a longer one
+ * (lazy matching), with the same values as zlib's levels.
+ *
+ * Lengths (3 to 258) and distances (1 to the window size) are coded as a
+ * bucket symbol plus extra bits: values below 4 are symbols of their own and
+ * every power of two above splits into 2 buckets, which is DEFLATE's scheme
+ * for distances, carried on up to windows of 16 MB.
+ *
+ * Layout: magic number, number of bytes, window size, the CodeTable headers of
+ * the literal/length and the distance tables, and the encoded bits.
+ */
+public class LZ77Compressor {
+
+	public static final int MAGIC = 0x4855465A; // "HUFZ"
+
+	public static final int MIN_MATCH = 3;
+	public static final int MAX_MATCH = 258;
+	public static final int MIN_WINDOW_SIZE = 1 << 8;
+	public static final int MAX_WINDOW_SIZE = 1 << 24;
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 15;
+	public static final int DEFAULT_EFFORT = 6;
+
+	/* Literals are symbols 0 to 255, match lengths follow them */
+	private static final int LITERALS = 256;
+	private static final int LENGTH_CODES = bucket(MAX_MATCH - MIN_MATCH) + 1;
+	private static final int DISTANCE_CODES = bucket(MAX_WINDOW_SIZE - 1) + 1;
+
+	private static final int HASH_BITS = 16;
+
+	/* Per effort level: positions tried per chain, length good enough to stop and longest match put off */
+	private static final int[] MAX_CHAIN = { 4, 8, 32, 16, 32, 128, 256, 1024, 4096 };
+	private static final int[] NICE_LENGTH = { 8, 16, 32, 16, 32, 128, 128, 258, 258 };
+	private static final int[] MAX_LAZY = { 0, 0, 0, 4, 16, 16, 32, 128, 258 };
+
+	private final int windowSize;
+	private final int maxChain;
+	private final int niceLength;
+	private final int maxLazy;
+
+	/**
+	 * @param windowSize how far back matches are looked for, a power of two from
+	 *                   MIN_WINDOW_SIZE to MAX_WINDOW_SIZE
+	 * @param effort     from 1 (fastest) to 9 (smallest output)
+	 */
+	public LZ77Compressor(int windowSize, int effort) {
+		if (windowSize < MIN_WINDOW_SIZE || windowSize > MAX_WINDOW_SIZE || Integer.bitCount(windowSize) != 1)
+			throw new IllegalArgumentException(
+					"Window size must be a power of two between " + MIN_WINDOW_SIZE + " and " + MAX_WINDOW_SIZE);
+		if (effort < 1 || effort > MAX_CHAIN.length)
+			throw new IllegalArgumentException("Effort must be between 1 and " + MAX_CHAIN.length);
+		this.windowSize = windowSize;
+		this.maxChain = MAX_CHAIN[effort - 1];
+		this.niceLength = NICE_LENGTH[effort - 1];
+		this.maxLazy = MAX_LAZY[effort - 1];
+	}
+
+	public LZ77Compressor() {
+		this(DEFAULT_WINDOW_SIZE, DEFAULT_EFFORT);
+	}
+
+	public byte[] compress(byte[] data) {
+		return compress(data, 0, data.length);
+	}
+
+	/**
+	 * Compresses length bytes of data starting at offset.
+	 *
+	 * @return The compressed bytes
+	 */
+	public byte[] compress(byte[] data, int offset, int length) {
+		Matches matches = findMatches(data, offset, length);
+
+		/* Count the symbols of both alphabets, then build their codes */
+		int[] literalFrequencies = new int[LITERALS + LENGTH_CODES];
+		int[] distanceFrequencies = new int[DISTANCE_CODES];
+		for (int i = 0, position = offset; i < matches.count; i++) {
+			int matchLength = matches.lengths[i];
+			if (matchLength == 0) {
+				literalFrequencies[data[position++] & 0xFF]++;
+			} else {
+				literalFrequencies[LITERALS + bucket(matchLength - MIN_MATCH)]++;
+				distanceFrequencies[bucket(matches.distances[i] - 1)]++;
+				position += matchLength;
+			}
+		}
+		CodeTable literalTable = CodeTable.canonical(StreamCompressor.codeLengths(literalFrequencies));
+		CodeTable distanceTable = CodeTable.canonical(StreamCompressor.codeLengths(distanceFrequencies));
+
+		BitWriter bits = new BitWriter(Math.max(16, length / 2));
+		long[] literalCodes = literalTable.getCodes(), distanceCodes = distanceTable.getCodes();
+		int[] literalLengths = literalTable.getLengths(), distanceLengths = distanceTable.getLengths();
+		for (int i = 0, position = offset; i < matches.count; i++) {
+			int matchLength = matches.lengths[i];
+			if (matchLength == 0) {
+				int literal = data[position++] & 0xFF;
+				bits.writeBits(literalCodes[literal], literalLengths[literal]);
+			} else {
+				int symbol = LITERALS + bucket(matchLength - MIN_MATCH);
+				bits.writeBits(literalCodes[symbol], literalLengths[symbol]);
+				writeExtra(bits, matchLength - MIN_MATCH);
+				int distanceSymbol = bucket(matches.distances[i] - 1);
+				bits.writeBits(distanceCodes[distanceSymbol], distanceLengths[distanceSymbol]);
+				writeExtra(bits, matches.distances[i] - 1);
+				position += matchLength;
+			}
+		}
+
+		return CodeTable.frame(out -> {
+			out.writeInt(MAGIC);
+			out.writeLong(length);
+			out.writeInt(windowSize);
+			literalTable.writeHeader(out);
+			distanceTable.writeHeader(out);
+		}, bits.toEncodedBits());
+	}
+
+	/**
+	 * Restores the bytes compressed by compress(), with any window size or
+	 * effort.
+	 *
+	 * @throws IllegalArgumentException if the bytes are not LZ77 compressed or are
+	 *                                  corrupt
+	 */
+	public static byte[] decompress(byte[] data) throws IllegalArgumentException {
+		ByteArrayInputStream in = new ByteArrayInputStream(data);
+		DataInputStream header = new DataInputStream(in);
+		long total;
+		int window;
+		CodeTable literalTable, distanceTable;
+		try {
+			if (header.readInt() != MAGIC)
+				throw new IllegalArgumentException("Not LZ77 compressed");
+			total = header.readLong();
+			window = header.readInt();
+			literalTable = CodeTable.readHeader(header, LITERALS + LENGTH_CODES);
+			distanceTable = CodeTable.readHeader(header, DISTANCE_CODES);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Invalid header", e);
+		}
+		if (total < 0 || total > CodeTable.MAX_ARRAY_SIZE || window < 1 || window > MAX_WINDOW_SIZE)
+			throw new IllegalArgumentException("Invalid lengths");
+		if (literalTable.alphabetSize() > LITERALS + LENGTH_CODES || distanceTable.alphabetSize() > DISTANCE_CODES)
+			throw new IllegalArgumentException("Code tables have symbols out of range");
+
+		byte[] result = new byte[(int) total];
+		if (total == 0)
+			return result;
+
+		long end = (long) data.length * 8;
+		BitReader bits = new BitReader(data, end);
+		bits.position((long) (data.length - in.available()) * 8);
+		DecodeTable literals = literalTable.decodeTable();
+		DecodeTable distances = distanceTable.decodeTable();
+		int position = 0;
+		while (position < result.length) {
+			int symbol = literals.decodeSymbol(bits);
+			if (symbol < 0)
+				throw new IllegalArgumentException("Compressed data is corrupt");
+			if (symbol < LITERALS) {
+				result[position++] = (byte) symbol;
+				continue;
+			}
+
+			int matchLength = readExtra(bits, symbol - LITERALS) + MIN_MATCH;
+			int distanceSymbol = distances.decodeSymbol(bits);
+			if (distanceSymbol < 0)
+				throw new IllegalArgumentException("Compressed data is corrupt");
+			int distance = readExtra(bits, distanceSymbol) + 1;
+			if (distance > position || distance > window || matchLength > result.length - position)
+				throw new IllegalArgumentException("Match is out of range");
+
+			/* Copies overlap when the distance is shorter than the length, byte by byte is what repeats them */
+			int from = position - distance;
+			if (distance >= matchLength) {
+				System.arraycopy(result, from, result, position, matchLength);
+			} else {
+				for (int i = 0; i < matchLength; i++)
+					result[position + i] = result[from + i];
+			}
+			position += matchLength;
+		}
+		if (bits.position() > end)
+			throw new IllegalArgumentException("Compressed data is truncated");
+		return result;
+	}
+
+	/* Tokens in input order: length 0 for a literal, or the length and distance of a match */
+	private static class Matches {
+		int[] lengths;
+		int[] distances;
+		int count;
+
+		Matches(int capacity) {
+			lengths = new int[capacity];
+			distances = new int[capacity];
+		}
+
+		void add(int length, int distance) {
+			if (count == lengths.length) {
+				lengths = Arrays.copyOf(lengths, count * 2);
+				distances = Arrays.copyOf(distances, count * 2);
+			}
+			lengths[count] = length;
+			distances[count++] = distance;
+		}
+	}
+
+	private Matches findMatches(byte[] data, int offset, int length) {
+		Matches matches = new Matches(Math.max(16, length / 4));
+		int end = offset + length;
+		/* Position + 1 of the latest string with each hash, 0 if none */
+		int[] head = new int[1 << HASH_BITS];
+		/* Position + 1 of the previous string with the same hash, for the last window of positions */
+		int[] prev = new int[length >= windowSize ? windowSize : Integer.highestOneBit(Math.max(1, length)) * 2];
+		int mask = prev.length - 1;
+
+		int nextMatch = -1, nextLength = 0, nextDistance = 0; // Match already found for nextMatch
+		for (int position = offset; position < end;) {
+			int matchLength, distance;
+			if (position == nextMatch) {
+				matchLength = nextLength;
+				distance = nextDistance;
+			} else {
+				long found = longestMatch(data, offset, end, position, head, prev, mask);
+				matchLength = (int) (found >>> 32);
+				distance = (int) found;
+			}
+			insert(data, offset, end, position, head, prev, mask);
+
+			if (matchLength >= MIN_MATCH && matchLength < maxLazy && position + 1 < end) {
+				/* A longer match at the next position is worth a literal here */
+				long found = longestMatch(data, offset, end, position + 1, head, prev, mask);
+				nextMatch = position + 1;
+				nextLength = (int) (found >>> 32);
+				nextDistance = (int) found;
+				if (nextLength > matchLength)
+					matchLength = 0;
+			}
+
+			if (matchLength < MIN_MATCH) {
+				matches.add(0, 0);
+				position++;
+			} else {
+				matches.add(matchLength, distance);
+				for (int i = position + 1; i < position + matchLength; i++)
+					insert(data, offset, end, i, head, prev, mask);
+				position += matchLength;
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Follows the hash chain of the string at position.
+	 *
+	 * @return The length of the longest match in the high half, its distance in
+	 *         the low half, 0 if there is none
+	 */
+	private long longestMatch(byte[] data, int offset, int end, int position, int[] head, int[] prev, int mask) {
+		if (end - position < MIN_MATCH)
+			return 0;
+		int limit = Math.min(MAX_MATCH, end - position);
+		int bestLength = MIN_MATCH - 1, bestDistance = 0;
+		int candidate = head[hash(data, position)] - 1;
+		for (int chain = maxChain; candidate >= offset && chain > 0; chain--) {
+			int distance = position - candidate;
+			if (distance >= windowSize)
+				break;
+			/* Checking the byte that would make the match longer first skips most candidates */
+			if (data[candidate + bestLength] == data[position + bestLength]) {
+				int matchLength = Arrays.mismatch(data, candidate, candidate + limit, data, position, position + limit);
+				if (matchLength < 0)
+					matchLength = limit;
+				if (matchLength > bestLength) {
+					bestLength = matchLength;
+					bestDistance = distance;
+					if (matchLength >= niceLength || matchLength == limit)
+						break;
+				}
+			}
+			int next = prev[candidate & mask] - 1;
+			if (next >= candidate)
+				break; // The slot was reused by a newer position
+			candidate = next;
+		}
+		return bestDistance == 0 ? 0 : (long) bestLength << 32 | bestDistance;
+	}
+
+	private static void insert(byte[] data, int offset, int end, int position, int[] head, int[] prev, int mask) {
+		if (end - position < MIN_MATCH)
+			return;
+		int h = hash(data, position);
+		prev[position & mask] = head[h];
+		head[h] = position + 1;
+	}
+
+	private static int hash(byte[] data, int position) {
+		int bytes = (data[position] & 0xFF) << 16 | (data[position + 1] & 0xFF) << 8 | (data[position + 2] & 0xFF);
+		return (bytes * 0x9E3779B1) >>> (32 - HASH_BITS);
+	}
+
+	/* Values below 4 have a bucket each, then 2 buckets per power of two */
+	private static int bucket(int value) {
+		if (value < 4)
+			return value;
+		int bits = 31 - Integer.numberOfLeadingZeros(value);
+		return 2 * bits + ((value >>> (bits - 1)) & 1);
+	}
+
+	private static int extraBits(int bucket) {
+		return bucket < 4 ? 0 : bucket / 2 - 1;
+	}
+
+	private static int bucketBase(int bucket) {
+		if (bucket < 4)
+			return bucket;
+		int extra = bucket / 2 - 1;
+		return (2 | (bucket & 1)) << extra;
+	}
+
+	/* The bits of value below its bucket's base */
+	private static void writeExtra(BitWriter bits, int value) {
+		int extra = extraBits(bucket(value));
+		if (extra > 0)
+			bits.writeBits(value & ((1 << extra) - 1), extra);
+	}
+
+	private static int readExtra(BitReader bits, int bucket) {
+		int extra = extraBits(bucket);
+		return bucketBase(bucket) + (extra == 0 ? 0 : (int) bits.readBits(extra));
+	}
+}
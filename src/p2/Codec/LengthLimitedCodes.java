@@ -0,0 +1,126 @@
+package p2.Codec;
+
+import java.util.Arrays;
+
+/**
+ * Optimal prefix code lengths that never exceed a maximum length, computed with
+ * the package-merge algorithm (Larmore and Hirschberg).
+ *
+ * A plain Huffman tree can get as deep as the number of symbols when the
+ * frequencies grow like the Fibonacci numbers. Bounding the lengths keeps the
+ * decoding tables small enough for a single lookup, at the cost of a slightly
+ * larger output on those distributions; on every other distribution the lengths
+ * are the same as Huffman's.
+ *
+ * Package-merge builds maxLength lists. The first one holds the symbols sorted
+ * by weight; every following one merges the symbols with the packages made by
+ * pairing consecutive items of the previous list. The first 2n - 2 items of
+ * the last list give the solution: every time a symbol is used in them, directly
+ * or inside a package, its code gets one bit longer.
+ */
+public class LengthLimitedCodes {
+
+	private LengthLimitedCodes() {
+	}
+
+	/**
+	 * Computes the code length of every symbol.
+	 *
+	 * @param weights   weight of every symbol, 0 if the symbol does not appear
+	 * @param maxLength longest code allowed, between 1 and 64
+	 * @return Code length of every symbol, 0 for the ones that do not appear
+	 * @throws IllegalArgumentException if a weight is negative or there are more
+	 *                                  than 2^maxLength symbols
+	 */
+	public static int[] lengths(long[] weights, int maxLength) throws IllegalArgumentException {
+		if (maxLength < 1 || maxLength > CodeTable.MAX_CODE_LENGTH)
+			throw new IllegalArgumentException("Maximum length must be between 1 and " + CodeTable.MAX_CODE_LENGTH);
+
+		int n = 0;
+		for (long weight : weights) {
+			if (weight < 0)
+				throw new IllegalArgumentException("Weights cannot be negative");
+			if (weight > 0)
+				n++;
+		}
+		int[] lengths = new int[weights.length];
+		if (n == 0)
+			return lengths;
+		if (maxLength < 63 && n > (1L << maxLength))
+			throw new IllegalArgumentException(n + " symbols do not fit in codes of " + maxLength + " bits");
+
+		/* Symbols sorted by weight, ties by symbol value so the result is deterministic */
+		Integer[] order = new Integer[n];
+		int k = 0;
+		for (int symbol = 0; symbol < weights.length; symbol++) {
+			if (weights[symbol] > 0)
+				order[k++] = symbol;
+		}
+		Arrays.sort(order, (a, b) -> weights[a] != weights[b] ? Long.compare(weights[a], weights[b]) : a - b);
+
+		if (n == 1) {
+			lengths[order[0]] = 1; // same as huffman_code(), a single symbol still takes one bit
+			return lengths;
+		}
+
+		long[] leaves = new long[n];
+		for (int i = 0; i < n; i++)
+			leaves[i] = weights[order[i]];
+
+		/*
+		 * Only 2n - 2 items of any list can ever be used, so longer lists are cut
+		 * there. For each list we keep which items are packages, which is all the
+		 * second step needs.
+		 */
+		int limit = 2 * n - 2;
+		boolean[][] isPackage = new boolean[maxLength][];
+		long[] previous = Arrays.copyOf(leaves, Math.min(n, limit));
+		isPackage[0] = new boolean[previous.length];
+		for (int level = 1; level < maxLength; level++) {
+			int packages = previous.length / 2;
+			int size = Math.min(n + packages, limit);
+			long[] current = new long[size];
+			boolean[] packaged = new boolean[size];
+			int leaf = 0, pack = 0;
+			for (int i = 0; i < size; i++) {
+				/* Leaves go first on ties, which keeps the codes as short as possible */
+				long packageWeight = pack < packages ? previous[2 * pack] + previous[2 * pack + 1] : Long.MAX_VALUE;
+				if (leaf < n && leaves[leaf] <= packageWeight) {
+					current[i] = leaves[leaf++];
+				} else {
+					current[i] = packageWeight;
+					packaged[i] = true;
+					pack++;
+				}
+			}
+			isPackage[level] = packaged;
+			previous = current;
+		}
+
+		/* Walk down the lists: the first m items of a list use the first 2p items of the one below */
+		int m = limit;
+		for (int level = maxLength - 1; level >= 0 && m > 0; level--) {
+			if (m > isPackage[level].length)
+				throw new IllegalStateException("Package-merge ran out of items");
+			int packages = 0;
+			for (int i = 0; i < m; i++) {
+				if (isPackage[level][i])
+					packages++;
+			}
+			for (int i = 0; i < m - packages; i++)
+				lengths[order[i]]++;
+			m = 2 * packages;
+		}
+		return lengths;
+	}
+
+	/**
+	 * Same as lengths(weights, maxLength) for int frequencies.
+	 */
+	public static int[] lengths(int[] frequencies, int maxLength) throws IllegalArgumentException {
+		long[] weights = new long[frequencies.length];
+		for (int i = 0; i < frequencies.length; i++)
+			weights[i] = frequencies[i];
+		return lengths(weights, maxLength);
+	}
+}
@@ -0,0 +1,278 @@
+package p2.Codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Memory-Mapped Huffman File Compressor
+ *
+ * Compresses files of any size, including files larger than the available
+ * memory, without reading them into the heap. The input is mapped with
+ * FileChannel.map() in regions of at most regionSize bytes (a single mapping
+ * cannot be larger than 2 GB) and both passes work on the mapped bytes:
+ * counting with ParallelHistogram and encoding one block per task, with the
+ * blocks of a region shared by all the threads of the pool.
+ *
+ * The codes are the same canonical codes StreamCompressor uses, but every block
+ * starts on a new byte and the header records the compressed size of each one,
+ * so decompressing also runs one block per task.
+ *
+ * Output layout: magic number, original length in bytes, block size, the
+ * CodeTable header, the compressed size of every block as an int and finally
+ * the blocks one after the other.
+ */
+public class MappedCompressor {
+
+	public static final int MAGIC = 0x48554633; // "HUF3"
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+	public static final long DEFAULT_REGION_SIZE = 1L << 30;
+
+	private static final int ALPHABET_SIZE = StreamCompressor.ALPHABET_SIZE;
+
+	/* Most blocks a file can have, so the index of 4 bytes per block fits in one buffer */
+	private static final int MAX_BLOCKS = CodeTable.MAX_ARRAY_SIZE / 4;
+
+	private final ForkJoinPool pool;
+	private final int blockSize;
+	private final int regionBlocks; // blocks mapped at a time
+	private final int batchBlocks; // blocks encoded at a time, bounds the memory used for their output
+
+	/**
+	 * @param pool       pool that runs the blocks
+	 * @param blockSize  bytes of input encoded by each task
+	 * @param regionSize largest part of a file mapped at once, rounded down to a
+	 *                   whole number of blocks
+	 */
+	public MappedCompressor(ForkJoinPool pool, int blockSize, long regionSize) {
+		if (pool == null)
+			throw new IllegalArgumentException("Pool cannot be null");
+		if (blockSize < 1)
+			throw new IllegalArgumentException("Block size must be at least 1");
+		if (regionSize < blockSize || regionSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Region size must be between the block size and 2 GB");
+		this.pool = pool;
+		this.blockSize = blockSize;
+		this.regionBlocks = (int) (regionSize / blockSize);
+		this.batchBlocks = Math.min(regionBlocks, 4 * pool.getParallelism());
+	}
+
+	public MappedCompressor(int blockSize) {
+		this(ForkJoinPool.commonPool(), blockSize, Math.max(blockSize, DEFAULT_REGION_SIZE));
+	}
+
+	public MappedCompressor() {
+		this(DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Compresses the input file into the output file.
+	 *
+	 * @param input  path of the file to compress
+	 * @param output path of the compressed file, replaced if it already exists
+	 * @return number of bytes written to the output file
+	 * @throws IOException if either file cannot be read or written
+	 */
+	public long compress(Path input, Path output) throws IOException {
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			long total = in.size();
+			long regionSize = (long) regionBlocks * blockSize;
+
+			/* First pass: count every byte of the file, one region at a time */
+			ParallelHistogram counter = new ParallelHistogram(pool, ParallelHistogram.DEFAULT_CHUNK_SIZE);
+			Histogram histogram = new Histogram(ALPHABET_SIZE);
+			for (long start = 0; start < total; start += regionSize)
+				histogram.merge(counter.countBytes(map(in, start, Math.min(regionSize, total - start))));
+
+			int[] frequencies = StreamCompressor.scaleFrequencies(histogram.getCounts(), total);
+			CodeTable table = CodeTable.canonical(StreamCompressor.codeLengths(frequencies));
+
+			long blockCount = blockCount(total, blockSize);
+			if (blockCount > MAX_BLOCKS)
+				throw new IOException("File has too many blocks for the block size");
+			int[] blockLengths = new int[(int) blockCount];
+
+			/* Leave room for the block sizes, they are written once every block is encoded */
+			out.write(ByteBuffer.wrap(header(total, table)));
+			long indexPosition = out.position();
+			out.position(indexPosition + 4L * blockLengths.length);
+
+			/* Second pass: encode the blocks of every region in parallel, writing them in order */
+			long[] codes = table.getCodes();
+			int[] lengths = table.getLengths();
+			for (long start = 0; start < total; start += regionSize) {
+				MappedByteBuffer region = map(in, start, Math.min(regionSize, total - start));
+				int firstBlock = (int) (start / blockSize);
+				int regionCount = (region.capacity() + blockSize - 1) / blockSize;
+
+				for (int batch = 0; batch < regionCount; batch += batchBlocks) {
+					int first = batch;
+					EncodedBits[] encoded = new EncodedBits[Math.min(batchBlocks, regionCount - batch)];
+					ParallelBlocks.forEach(pool, encoded.length, i -> {
+						int from = (first + i) * blockSize;
+						int to = Math.min(region.capacity(), from + blockSize);
+						encoded[i] = encodeBlock(region, from, to, codes, lengths);
+					});
+
+					for (int i = 0; i < encoded.length; i++) {
+						ByteBuffer data = ByteBuffer.wrap(encoded[i].getData(), 0, (int) encoded[i].getByteLength());
+						while (data.hasRemaining())
+							out.write(data);
+						blockLengths[firstBlock + batch + i] = (int) encoded[i].getByteLength();
+					}
+				}
+			}
+			long size = out.position();
+
+			ByteBuffer index = ByteBuffer.allocate(4 * blockLengths.length);
+			index.asIntBuffer().put(blockLengths);
+			while (index.hasRemaining())
+				out.write(index, indexPosition + index.position());
+
+			return size;
+		}
+	}
+
+	/**
+	 * Restores a file written by compress().
+	 *
+	 * The compressed file is mapped in regions of whole blocks and the blocks of
+	 * each region are decoded in parallel, each one written straight to its place
+	 * in the output file.
+	 *
+	 * @param input  path of the compressed file
+	 * @param output path of the restored file, replaced if it already exists
+	 * @return number of bytes written to the output file
+	 * @throws IOException if either file cannot be read or written, or the input
+	 *                     is not a compressed file
+	 */
+	public long decompress(Path input, Path output) throws IOException {
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			/* Unbuffered on purpose, so the channel is left right after the header */
+			DataInputStream header = new DataInputStream(Channels.newInputStream(in));
+			if (header.readInt() != MAGIC)
+				throw new IOException("Not a compressed file");
+			long total = header.readLong();
+			int size = header.readInt();
+			/* Every code is at least one bit long, so the file holds at least a bit per byte */
+			if (total < 0 || size < 1 || total / 8 > in.size() || blockCount(total, size) > MAX_BLOCKS)
+				throw new IOException("Compressed file header is corrupt");
+			CodeTable table = CodeTable.readHeader(header, ALPHABET_SIZE);
+			DecodeTable decoder = table.decodeTable();
+
+			int[] blockLengths = new int[(int) blockCount(total, size)];
+			ByteBuffer index = ByteBuffer.allocate(4 * blockLengths.length);
+			while (index.hasRemaining()) {
+				if (in.read(index) < 0)
+					throw new IOException("Compressed data is truncated");
+			}
+			index.flip();
+			index.asIntBuffer().get(blockLengths);
+
+			long[] blockStarts = new long[blockLengths.length + 1];
+			blockStarts[0] = in.position();
+			for (int i = 0; i < blockLengths.length; i++) {
+				if (blockLengths[i] < 0)
+					throw new IOException("Compressed file index is corrupt");
+				blockStarts[i + 1] = blockStarts[i] + blockLengths[i];
+			}
+			if (blockStarts[blockLengths.length] > in.size())
+				throw new IOException("Compressed data is truncated");
+
+			/* Map as many whole blocks as fit in a region and decode them in parallel */
+			long regionSize = (long) regionBlocks * blockSize;
+			for (int first = 0; first < blockLengths.length;) {
+				int last = first + 1;
+				while (last < blockLengths.length && blockStarts[last + 1] - blockStarts[first] <= regionSize)
+					last++;
+
+				/* A single block can be larger than a region, but not larger than one mapping */
+				if (blockStarts[last] - blockStarts[first] > Integer.MAX_VALUE)
+					throw new IOException("Compressed block is too large");
+				int firstBlock = first;
+				MappedByteBuffer region = map(in, blockStarts[first], blockStarts[last] - blockStarts[first]);
+				IOException[] failure = new IOException[1];
+				ParallelBlocks.forEach(pool, last - first, i -> {
+					int block = firstBlock + i;
+					int from = (int) (blockStarts[block] - blockStarts[firstBlock]);
+					int symbols = (int) Math.min(size, total - (long) block * size);
+					try {
+						ByteBuffer decoded = ByteBuffer.wrap(decodeBlock(region, from, blockLengths[block], symbols, decoder));
+						long position = (long) block * size;
+						while (decoded.hasRemaining())
+							out.write(decoded, position + decoded.position());
+					} catch (IOException e) {
+						synchronized (failure) {
+							failure[0] = e;
+						}
+					}
+				});
+				if (failure[0] != null)
+					throw failure[0];
+				first = last;
+			}
+
+			return total;
+		}
+	}
+
+	private byte[] header(long total, CodeTable table) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(header);
+		data.writeInt(MAGIC);
+		data.writeLong(total);
+		data.writeInt(blockSize);
+		table.writeHeader(data);
+		return header.toByteArray();
+	}
+
+	/* Number of blocks of blockSize bytes needed for total bytes, without overflowing */
+	private static long blockCount(long total, int blockSize) {
+		return total / blockSize + (total % blockSize != 0 ? 1 : 0);
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		return channel.map(MapMode.READ_ONLY, position, size);
+	}
+
+	/* Encodes the mapped bytes from index from (inclusive) to index to (exclusive), reading them in place */
+	private static EncodedBits encodeBlock(ByteBuffer region, int from, int to, long[] codes, int[] lengths) {
+		BitWriter writer = new BitWriter(to - from);
+		for (int i = from; i < to; i++) {
+			int symbol = region.get(i) & 0xFF;
+			writer.writeBits(codes[symbol], lengths[symbol]);
+		}
+		return writer.toEncodedBits();
+	}
+
+	private static byte[] decodeBlock(ByteBuffer region, int from, int length, int symbols, DecodeTable table)
+			throws IOException {
+		if (symbols > 8L * length)
+			throw new IOException("Compressed data is truncated");
+		byte[] data = new byte[length];
+		region.duplicate().position(from).get(data);
+
+		BitReader bits = new BitReader(data, (long) length * 8);
+		byte[] result = new byte[symbols];
+		for (int i = 0; i < symbols; i++) {
+			int symbol = table.decodeSymbol(bits);
+			if (symbol < 0 || bits.position() > (long) length * 8)
+				throw new IOException("Compressed data is corrupt");
+			result[i] = (byte) symbol;
+		}
+		return result;
+	}
+}
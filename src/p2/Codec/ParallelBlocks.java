@@ -0,0 +1,36 @@
+package p2.Codec;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs one task per block in a ForkJoinPool, for the codecs that split their
+ * input into independent blocks (BlockCodec and MappedCompressor).
+ */
+class ParallelBlocks {
+
+	private ParallelBlocks() {
+	}
+
+	/**
+	 * Runs action for every block number from 0 to blockCount - 1 as a separate
+	 * task in the pool and waits for all of them. An exception thrown by any
+	 * block is thrown here.
+	 */
+	@SuppressWarnings("serial")
+	static void forEach(ForkJoinPool pool, int blockCount, IntConsumer action) {
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[blockCount];
+				for (int i = 0; i < blockCount; i++) {
+					int block = i;
+					tasks[i] = ForkJoinTask.adapt(() -> action.accept(block));
+				}
+				invokeAll(tasks);
+			}
+		});
+	}
+}
@@ -0,0 +1,116 @@
+package p2.Codec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel frequency counting engine.
+ *
+ * The input is split in half recursively until each piece is at most chunkSize
+ * symbols long. Every piece is counted into its own Histogram by a fork/join
+ * task, and the histograms are merged on the way back up, so tasks never share
+ * a counter.
+ *
+ * Inputs no longer than chunkSize are counted directly in the calling thread.
+ */
+public class ParallelHistogram {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	/** Counts the symbols between two positions of the input into a histogram */
+	@FunctionalInterface
+	private interface RangeCounter {
+		void count(Histogram into, int from, int to);
+	}
+
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+
+	public ParallelHistogram(ForkJoinPool pool, int chunkSize) {
+		if (pool == null)
+			throw new IllegalArgumentException("Pool cannot be null");
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("Chunk size must be at least 1");
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	public ParallelHistogram() {
+		this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Counts every char of the text.
+	 */
+	public Histogram countChars(CharSequence text) {
+		return count(text.length(), (into, from, to) -> into.addChars(text, from, to));
+	}
+
+	/**
+	 * Counts length bytes of data starting at offset.
+	 */
+	public Histogram countBytes(byte[] data, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > data.length)
+			throw new IndexOutOfBoundsException("Range is outside of the array");
+		return count(length, (into, from, to) -> into.addBytes(data, offset + from, to - from));
+	}
+
+	public Histogram countBytes(byte[] data) {
+		return countBytes(data, 0, data.length);
+	}
+
+	/**
+	 * Counts the remaining bytes of the buffer, which can be a memory-mapped
+	 * region of a file. The position of the buffer is not changed.
+	 */
+	public Histogram countBytes(ByteBuffer buffer) {
+		int start = buffer.position();
+		return count(buffer.remaining(), (into, from, to) -> {
+			ByteBuffer slice = buffer.duplicate();
+			slice.limit(start + to).position(start + from);
+			into.addBytes(slice);
+		});
+	}
+
+	private Histogram count(int length, RangeCounter counter) {
+		if (length <= chunkSize) {
+			Histogram result = new Histogram();
+			counter.count(result, 0, length);
+			return result;
+		}
+		return pool.invoke(new CountTask(counter, 0, length, chunkSize));
+	}
+
+	private static class CountTask extends RecursiveTask<Histogram> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RangeCounter counter;
+		private final int from, to, chunkSize;
+
+		CountTask(RangeCounter counter, int from, int to, int chunkSize) {
+			this.counter = counter;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected Histogram compute() {
+			if (to - from <= chunkSize) {
+				Histogram result = new Histogram();
+				counter.count(result, from, to);
+				return result;
+			}
+
+			/* Count the left half in another task while this one counts the right half */
+			int middle = from + (to - from) / 2;
+			CountTask left = new CountTask(counter, from, middle, chunkSize);
+			left.fork();
+			Histogram result = new CountTask(counter, middle, to, chunkSize).compute();
+			result.merge(left.join());
+			return result;
+		}
+	}
+}
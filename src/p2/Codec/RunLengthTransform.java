@@ -0,0 +1,111 @@
+package p2.Codec;
+
+/**
+ * Run-length pre-stage for the String pipeline, so long runs of one character
+ * cost a few symbols instead of at least one bit per character.
+ *
+ * A run of n >= MIN_RUN equal characters becomes the character once, followed
+ * by n - 1 written in base 16 with the escape characters U+FDD0 to U+FDDF as
+ * digits, most significant first. Those are Unicode noncharacters, reserved
+ * for uses like this one and never part of text, and compute_fd() counts each
+ * of them as a symbol of its own, so they get Huffman codes next to the
+ * letters. Escapes always follow the character they repeat, which is how
+ * decode() tells them apart from everything else.
+ */
+public class RunLengthTransform {
+
+	/* First escape digit, the others follow it */
+	public static final char ESCAPE_BASE = '\uFDD0';
+	public static final int ESCAPE_COUNT = 16;
+
+	/* Shortest run worth replacing: the character and one digit take 2 symbols */
+	public static final int MIN_RUN = 3;
+
+	public static boolean isEscape(char c) {
+		return c >= ESCAPE_BASE && c < ESCAPE_BASE + ESCAPE_COUNT;
+	}
+
+	/**
+	 * Replaces every run of MIN_RUN or more equal characters with the character
+	 * and the escape digits of its repeat count.
+	 *
+	 * @return The transformed text, the same String if it has no runs
+	 * @throws IllegalArgumentException if the text already has escape characters
+	 */
+	public static String encode(String text) throws IllegalArgumentException {
+		int length = text.length();
+		char[] out = null;
+		int position = 0;
+		for (int i = 0; i < length;) {
+			char c = text.charAt(i);
+			if (isEscape(c))
+				throw new IllegalArgumentException("Text has the reserved character U+"
+						+ Integer.toHexString(c).toUpperCase() + " at " + i);
+			int end = i + 1;
+			while (end < length && text.charAt(end) == c)
+				end++;
+
+			int run = end - i;
+			if (run < MIN_RUN) {
+				if (out != null) {
+					for (int j = 0; j < run; j++)
+						out[position++] = c;
+				}
+			} else {
+				/* The output is never longer than the text, so it only needs one array */
+				if (out == null) {
+					out = new char[length];
+					text.getChars(0, i, out, 0);
+					position = i;
+				}
+				out[position++] = c;
+				int repeats = run - 1;
+				int digits = (35 - Integer.numberOfLeadingZeros(repeats)) / 4;
+				for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4)
+					out[position++] = (char) (ESCAPE_BASE + ((repeats >>> shift) & (ESCAPE_COUNT - 1)));
+			}
+			i = end;
+		}
+		return out == null ? text : new String(out, 0, position);
+	}
+
+	/**
+	 * Expands the runs replaced by encode().
+	 *
+	 * @return The original text
+	 * @throws IllegalArgumentException if escape digits do not follow a character
+	 */
+	public static String decode(String text) throws IllegalArgumentException {
+		int length = text.length();
+		int i = 0;
+		while (i < length && !isEscape(text.charAt(i)))
+			i++;
+		if (i == length)
+			return text;
+		if (i == 0)
+			throw new IllegalArgumentException("Escape digits at the start of the text");
+
+		StringBuilder result = new StringBuilder(length * 2);
+		result.append(text, 0, i);
+		while (i < length) {
+			char c = text.charAt(i);
+			if (!isEscape(c)) {
+				result.append(c);
+				i++;
+				continue;
+			}
+
+			/* A run of digits always starts right after the character it repeats */
+			char repeated = text.charAt(i - 1);
+			long repeats = 0;
+			while (i < length && isEscape(text.charAt(i))) {
+				repeats = repeats << 4 | (text.charAt(i++) - ESCAPE_BASE);
+				if (repeats > Integer.MAX_VALUE - result.length())
+					throw new IllegalArgumentException("Run is too long");
+			}
+			for (long j = 0; j < repeats; j++)
+				result.append(repeated);
+		}
+		return result.toString();
+	}
+}
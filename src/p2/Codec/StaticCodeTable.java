@@ -0,0 +1,179 @@
+package p2.Codec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Pre-trained Huffman code table for short messages, like the static table of
+ * HTTP/2's HPACK.
+ *
+ * A message of a few dozen bytes cannot pay for its own table: the code lengths
+ * alone are longer than the message. Instead, one table is trained offline from
+ * the byte frequencies of a corpus, saved to a file and loaded once, and every
+ * message is encoded and decoded with it straight away, without counting or
+ * building any tree.
+ *
+ * Messages are encoded as their UTF-8 bytes, and every byte value gets a code
+ * (bytes missing from the corpus are counted once), so any string can be
+ * encoded. Codes are at most MAX_CODE_LENGTH bits long.
+ *
+ * To train and save the default table: StaticCodeTable [corpus directory]
+ * [table file], by default inputData/ and staticTable.huf.
+ */
+public class StaticCodeTable {
+
+	public static final int MAGIC = 0x48554653; // "HUFS"
+	public static final int MAX_CODE_LENGTH = 15;
+	public static final String DEFAULT_CORPUS = "inputData";
+	public static final String DEFAULT_FILE = "staticTable.huf";
+
+	private static final int ALPHABET_SIZE = 256;
+
+	private final CodeTable table;
+	private final DecodeTable decoder;
+	private final CharEncoder encoder;
+
+	private StaticCodeTable(CodeTable table) {
+		this.table = table;
+		this.decoder = table.decodeTable();
+		this.encoder = CharEncoder.of(table);
+	}
+
+	/* Loaded the first time getDefault() is called */
+	private static class DefaultHolder {
+		static final StaticCodeTable INSTANCE = loadDefault();
+	}
+
+	/**
+	 * The table saved in staticTable.huf, or one trained from inputData/ if that
+	 * file does not exist. It is only loaded once.
+	 */
+	public static StaticCodeTable getDefault() {
+		return DefaultHolder.INSTANCE;
+	}
+
+	private static StaticCodeTable loadDefault() {
+		try {
+			Path file = Paths.get(DEFAULT_FILE);
+			return Files.exists(file) ? load(file) : train(Paths.get(DEFAULT_CORPUS));
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not load the default static code table", e);
+		}
+	}
+
+	/**
+	 * Trains a table from the bytes of every file in a directory.
+	 *
+	 * @param corpus directory with the sample files
+	 * @return The trained table
+	 * @throws IOException if a file cannot be read
+	 */
+	public static StaticCodeTable train(Path corpus) throws IOException {
+		File[] files = corpus.toFile().listFiles();
+		if (files == null)
+			throw new IOException("Not a directory: " + corpus);
+
+		Histogram histogram = new Histogram(ALPHABET_SIZE);
+		for (File file : files) {
+			if (file.isFile()) {
+				byte[] data = Files.readAllBytes(file.toPath());
+				histogram.addBytes(data, 0, data.length);
+			}
+		}
+		return train(histogram);
+	}
+
+	/**
+	 * Trains a table from byte frequencies, giving every byte value a code.
+	 */
+	public static StaticCodeTable train(Histogram histogram) {
+		long[] weights = new long[ALPHABET_SIZE];
+		for (int b = 0; b < ALPHABET_SIZE; b++)
+			weights[b] = histogram.count(b) + 1;
+		return new StaticCodeTable(CodeTable.canonical(LengthLimitedCodes.lengths(weights, MAX_CODE_LENGTH)));
+	}
+
+	/**
+	 * Writes the table to a file that load() can read.
+	 */
+	public void save(Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			table.writeHeader(out);
+		}
+	}
+
+	/**
+	 * @throws IOException if the file cannot be read or is not a saved table
+	 */
+	public static StaticCodeTable load(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a static code table");
+			CodeTable table = CodeTable.readHeader(in, ALPHABET_SIZE);
+			for (int b = 0; b < ALPHABET_SIZE; b++) {
+				if (table.getLength(b) == 0)
+					throw new IOException("Static code table is missing byte " + b);
+			}
+			return new StaticCodeTable(table);
+		}
+	}
+
+	public CodeTable getCodeTable() {
+		return table;
+	}
+
+	/**
+	 * Encodes the UTF-8 bytes of a message.
+	 *
+	 * @param message String to encode
+	 * @return The packed bits
+	 */
+	public EncodedBits encode(String message) {
+		byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+		return encoder.encode(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Decodes a message encoded by encode() with the same table.
+	 *
+	 * @param encoded The packed bits
+	 * @return The decoded String
+	 * @throws IllegalArgumentException if the bits do not decode to whole codes
+	 */
+	public String decode(EncodedBits encoded) throws IllegalArgumentException {
+		BitReader bits = new BitReader(encoded);
+		long maxBytes = encoded.getBitLength() / decoder.getMinLength();
+		if (maxBytes > CodeTable.MAX_ARRAY_SIZE)
+			throw new IllegalArgumentException("Encoded message is too long");
+		byte[] bytes = new byte[(int) maxBytes];
+		int count = 0;
+		while (bits.hasMore()) {
+			int symbol = decoder.decodeSymbol(bits);
+			if (symbol < 0 || bits.position() > encoded.getBitLength())
+				throw new IllegalArgumentException("Encoded bits do not match the static table");
+			bytes[count++] = (byte) symbol;
+		}
+		return new String(bytes, 0, count, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Trains a table from a corpus directory and saves it.
+	 *
+	 * Usage: StaticCodeTable [corpus directory] [table file]
+	 */
+	public static void main(String[] args) throws IOException {
+		Path corpus = Paths.get(args.length > 0 ? args[0] : DEFAULT_CORPUS);
+		Path file = Paths.get(args.length > 1 ? args[1] : DEFAULT_FILE);
+		train(corpus).save(file);
+		System.out.println("Saved the table trained from " + corpus + " to " + file);
+	}
+}
@@ -0,0 +1,291 @@
+package p2.Codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import p2.HuffmanCoding;
+import p2.DataStructures.List.List;
+import p2.DataStructures.Map.HashTableOA;
+import p2.DataStructures.Map.Map;
+import p2.DataStructures.Tree.BTNode;
+
+/**
+ * Streaming Huffman File Compressor
+ *
+ * Compresses a file of any size by reading it in fixed-size chunks over a
+ * FileChannel, so the contents are never held in memory as a single String.
+ *
+ * The first pass computes the frequency distribution of every byte in the file,
+ * the second pass encodes each byte with the canonical codes for the lengths of
+ * the prefix codes generated by huffman_tree() and huffman_code() and writes the
+ * packed bits to the output file.
+ *
+ * Output layout: magic number, original length in bytes, the CodeTable header
+ * with the code length of every byte and finally the encoded bits, most
+ * significant bit first, with the last byte padded with zeros. Decompressing
+ * only needs that header to rebuild the decoding tables.
+ */
+public class StreamCompressor {
+
+	public static final int MAGIC = 0x48554632; // "HUF2"
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	/* Largest code that still fits in the 64-bit accumulator next to a partial byte */
+	static final int MAX_CODE_LENGTH = 56;
+	static final int ALPHABET_SIZE = 256;
+
+	private final int chunkSize;
+
+	public StreamCompressor(int chunkSize) {
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("Chunk size must be at least 1");
+		this.chunkSize = chunkSize;
+	}
+
+	public StreamCompressor() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Compresses the input file into the output file.
+	 *
+	 * @param input  path of the file to compress
+	 * @param output path of the compressed file, replaced if it already exists
+	 * @return number of bytes written to the output file
+	 * @throws IOException if either file cannot be read or written
+	 */
+	public long compress(Path input, Path output) throws IOException {
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer inBuffer = ByteBuffer.allocate(chunkSize);
+			/* The header has at most 256 (symbol, length) pairs, so make room for it */
+			ByteBuffer outBuffer = ByteBuffer.allocate(Math.max(chunkSize, 4096));
+
+			/* First pass: count every byte of the file */
+			Histogram histogram = countBytes(in, inBuffer);
+			long total = histogram.total();
+
+			int[] frequencies = scaleFrequencies(histogram.getCounts(), total);
+			CodeTable table = CodeTable.canonical(codeLengths(frequencies));
+
+			writeHeader(outBuffer, total, table);
+
+			/* Second pass: encode every byte of the file */
+			encodeBytes(in, inBuffer, out, outBuffer, total, table.getCodes(), table.getLengths());
+			flush(out, outBuffer);
+
+			return out.position();
+		}
+	}
+
+	/**
+	 * Restores a file written by compress().
+	 *
+	 * The decoding tables are rebuilt from the code lengths in the header, and the
+	 * encoded bits are decoded in chunks as they are read.
+	 *
+	 * @param input  path of the compressed file
+	 * @param output path of the restored file, replaced if it already exists
+	 * @return number of bytes written to the output file
+	 * @throws IOException if either file cannot be read or written, or the input
+	 *                     is not a compressed file
+	 */
+	public long decompress(Path input, Path output) throws IOException {
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			/* Unbuffered on purpose, so the channel is left right after the header */
+			DataInputStream header = new DataInputStream(Channels.newInputStream(in));
+			if (header.readInt() != MAGIC)
+				throw new IOException("Not a compressed file");
+			long total = header.readLong();
+			CodeTable table = CodeTable.readHeader(header, ALPHABET_SIZE);
+
+			ByteBuffer outBuffer = ByteBuffer.allocate(chunkSize);
+			if (total > 0)
+				decodeBytes(in, out, outBuffer, total, table.decodeTable());
+			flush(out, outBuffer);
+
+			return out.position();
+		}
+	}
+
+	/**
+	 * Reads the channel from the beginning and counts the occurrences of each
+	 * byte.
+	 */
+	private static Histogram countBytes(FileChannel in, ByteBuffer buffer) throws IOException {
+		Histogram histogram = new Histogram(ALPHABET_SIZE);
+		in.position(0);
+		buffer.clear();
+		while (in.read(buffer) > 0) {
+			buffer.flip();
+			histogram.addBytes(buffer);
+			buffer.clear();
+		}
+		return histogram;
+	}
+
+	/**
+	 * The Huffman tree stores frequencies as Integer and its root holds the sum of
+	 * all of them, so when the file has more bytes than that we scale the counts
+	 * down, making sure no symbol that appears in the file drops to 0.
+	 */
+	static int[] scaleFrequencies(long[] counts, long total) {
+		int[] frequencies = new int[counts.length];
+		long divisor = 1;
+		if (total > Integer.MAX_VALUE)
+			divisor = (total + (Integer.MAX_VALUE - counts.length) - 1) / (Integer.MAX_VALUE - counts.length);
+
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0)
+				frequencies[i] = (int) Math.max(1, counts[i] / divisor);
+		}
+		return frequencies;
+	}
+
+	/**
+	 * Builds the Huffman tree for the byte frequencies and returns the length of
+	 * the prefix code of every byte value. Works the same for any alphabet that
+	 * fits in a char, like the literal/length symbols of LZ77Compressor.
+	 */
+	static int[] codeLengths(int[] frequencies) {
+		int[] lengths = new int[Math.max(ALPHABET_SIZE, frequencies.length)];
+		/* Each byte is represented by the char with the same value (ISO-8859-1) */
+		Map<String, Integer> fD = new HashTableOA<>();
+		for (int i = 0; i < frequencies.length; i++) {
+			if (frequencies[i] > 0)
+				fD.put(String.valueOf((char) i), frequencies[i]);
+		}
+
+		if (fD.isEmpty())
+			return lengths;
+
+		BTNode<Integer, String> root = HuffmanCoding.huffman_tree(fD);
+		Map<String, String> prefixCodes = HuffmanCoding.huffman_code(root);
+
+		List<String> symbols = prefixCodes.getKeys();
+		for (String symbol : symbols) {
+			lengths[symbol.charAt(0)] = prefixCodes.get(symbol).length();
+		}
+
+		/* Very skewed counts can make the tree too deep, limit the lengths instead */
+		for (int length : lengths) {
+			if (length > MAX_CODE_LENGTH)
+				return LengthLimitedCodes.lengths(frequencies, MAX_CODE_LENGTH);
+		}
+		return lengths;
+	}
+
+	private static void writeHeader(ByteBuffer out, long total, CodeTable table) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(header);
+		data.writeInt(MAGIC);
+		data.writeLong(total);
+		table.writeHeader(data);
+		out.put(header.toByteArray());
+	}
+
+	/**
+	 * Reads the channel from the beginning again and writes the code of every byte
+	 * through a 64-bit accumulator, emitting whole bytes as soon as they are ready.
+	 */
+	private static void encodeBytes(FileChannel in, ByteBuffer inBuffer, FileChannel out, ByteBuffer outBuffer,
+			long total, long[] codes, int[] lengths) throws IOException {
+		long bitBuffer = 0;
+		int bitCount = 0;
+		long remaining = total;
+
+		in.position(0);
+		inBuffer.clear();
+		while (remaining > 0 && in.read(inBuffer) > 0) {
+			inBuffer.flip();
+			byte[] chunk = inBuffer.array();
+			int limit = (int) Math.min(inBuffer.limit(), remaining);
+			for (int i = 0; i < limit; i++) {
+				int symbol = chunk[i] & 0xFF;
+				bitBuffer = (bitBuffer << lengths[symbol]) | codes[symbol];
+				bitCount += lengths[symbol];
+				while (bitCount >= 8) {
+					bitCount -= 8;
+					if (!outBuffer.hasRemaining())
+						flush(out, outBuffer);
+					outBuffer.put((byte) (bitBuffer >>> bitCount));
+				}
+			}
+			remaining -= limit;
+			inBuffer.clear();
+		}
+
+		/* Pad the last partial byte with zeros */
+		if (bitCount > 0) {
+			if (!outBuffer.hasRemaining())
+				flush(out, outBuffer);
+			outBuffer.put((byte) (bitBuffer << (8 - bitCount)));
+		}
+	}
+
+	private static void flush(FileChannel out, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			out.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Decodes total bytes from the rest of the channel. The encoded bits are read
+	 * in chunks, and the bytes not consumed yet are moved to the start of the
+	 * buffer before reading the next chunk, so a code can span two chunks.
+	 */
+	private void decodeBytes(FileChannel in, FileChannel out, ByteBuffer outBuffer, long total, DecodeTable table)
+			throws IOException {
+		/* A whole code must fit in what is left of the buffer before decoding it */
+		int reserve = (table.getMaxLength() + 7) / 8 + 8;
+		byte[] chunk = new byte[Math.max(chunkSize, 2 * reserve)];
+		ByteBuffer inBuffer = ByteBuffer.wrap(chunk);
+		boolean endOfFile = false;
+		int available = 0;
+		long remaining = total;
+		long position = 0; // bit position in chunk
+
+		while (remaining > 0) {
+			/* Refill: keep the unread bytes and read as many more as fit */
+			int consumed = (int) (position >>> 3);
+			System.arraycopy(chunk, consumed, chunk, 0, available - consumed);
+			available -= consumed;
+			position &= 7;
+			inBuffer.limit(chunk.length).position(available);
+			while (!endOfFile && inBuffer.hasRemaining()) {
+				if (in.read(inBuffer) < 0)
+					endOfFile = true;
+			}
+			available = inBuffer.position();
+
+			/* Decode until a code could reach past the bytes read so far */
+			long safeEnd = endOfFile ? (long) available * 8 : (long) (available - reserve) * 8;
+			BitReader bits = new BitReader(chunk, (long) available * 8);
+			bits.position(position);
+			while (remaining > 0 && bits.position() < safeEnd) {
+				int symbol = table.decodeSymbol(bits);
+				if (symbol < 0 || bits.position() > (long) available * 8)
+					throw new IOException("Compressed data is corrupt");
+				if (!outBuffer.hasRemaining())
+					flush(out, outBuffer);
+				outBuffer.put((byte) symbol);
+				remaining--;
+			}
+			position = bits.position();
+
+			if (remaining > 0 && endOfFile && position >= (long) available * 8)
+				throw new IOException("Compressed data is truncated");
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package p2.Codec;
+
+import p2.DataStructures.Map.HashTableOA;
+import p2.DataStructures.Map.Map;
+import p2.DataStructures.Tree.BTNode;
+
+/**
+ * Prefix codes as primitives: a long code word and a byte length per symbol
+ * index, with the name of every symbol kept apart.
+ *
+ * The codes are read off a Huffman tree by walking it iteratively and keeping
+ * the code of the current node in a single long, shifting a bit in on the way
+ * down and out on the way up, so nothing is allocated per node. The Map of
+ * String codes the rest of the pipeline uses is derived from them by toMap().
+ */
+public class SymbolCodes {
+
+	/* Longest code that fits in the long code words */
+	public static final int MAX_LENGTH = 64;
+
+	private final long[] codes;
+	private final byte[] lengths;
+	private final String[] names;
+	private int maxLength;
+
+	private SymbolCodes(int size) {
+		codes = new long[size];
+		lengths = new byte[size];
+		names = new String[size];
+	}
+
+	/**
+	 * Reads the codes off a tree built by huffman_tree(), 0 for left and 1 for
+	 * right. Symbols are numbered in the order their leaves appear from left to
+	 * right. A tree with a single leaf gives it the code "0".
+	 *
+	 * @param root root of the tree, whose nodes must have their parent set
+	 * @return The codes of every leaf
+	 * @throws IllegalArgumentException if the tree is deeper than MAX_LENGTH or a
+	 *                                  node has no parent
+	 */
+	public static SymbolCodes of(BTNode<Integer, String> root) throws IllegalArgumentException {
+		SymbolCodes result = tryOf(root);
+		if (result == null)
+			throw new IllegalArgumentException(
+					"Tree is deeper than " + MAX_LENGTH + " levels or a node has no parent");
+		return result;
+	}
+
+	/**
+	 * Like of(), for callers that have another way to get the codes of trees it
+	 * cannot handle.
+	 *
+	 * @return The codes of every leaf, or null if the tree is deeper than
+	 *         MAX_LENGTH or a node has no parent
+	 */
+	public static SymbolCodes tryOf(BTNode<Integer, String> root) {
+		int count = walk(root, null);
+		if (count < 0)
+			return null;
+		SymbolCodes result = new SymbolCodes(count);
+		walk(root, result);
+		return result;
+	}
+
+	/**
+	 * Reads the codes off a flat tree. Symbols keep the numbers they have in the
+	 * tree.
+	 */
+	public static SymbolCodes of(FlatHuffmanTree tree) throws IllegalArgumentException {
+		SymbolCodes result = new SymbolCodes(tree.symbolCount());
+		int root = tree.root();
+		if (tree.isLeaf(root)) {
+			result.set(tree.symbol(root), tree.name(tree.symbol(root)), 0, 1);
+			return result;
+		}
+
+		/* Parents come after their children, so the code of a node is always known before its children's */
+		long[] nodeCodes = new long[tree.size()];
+		byte[] depth = new byte[tree.size()];
+		for (int node = root; node >= 0; node--) {
+			if (tree.isLeaf(node)) {
+				result.set(tree.symbol(node), tree.name(tree.symbol(node)), nodeCodes[node], depth[node]);
+				continue;
+			}
+			if (depth[node] == MAX_LENGTH)
+				throw new IllegalArgumentException("Tree is deeper than " + MAX_LENGTH + " levels");
+			int left = tree.left(node), right = tree.right(node);
+			nodeCodes[left] = nodeCodes[node] << 1;
+			nodeCodes[right] = nodeCodes[node] << 1 | 1;
+			depth[left] = depth[right] = (byte) (depth[node] + 1);
+		}
+		return result;
+	}
+
+	/*
+	 * Visits the leaves from left to right, recording them in codes if it is not
+	 * null, and returns how many there are, or -1 if the tree is too deep or a node
+	 * has no parent. Goes down to the leftmost child first, then back up until it
+	 * can step into a right child it has not visited.
+	 */
+	private static int walk(BTNode<Integer, String> root, SymbolCodes codes) {
+		if (root == null)
+			return 0;
+
+		int count = 0;
+		BTNode<Integer, String> node = root;
+		long code = 0;
+		int depth = 0;
+		while (true) {
+			if (node.getLeftChild() != null || node.getRightChild() != null) {
+				if (depth == MAX_LENGTH)
+					return -1;
+				boolean right = node.getLeftChild() == null;
+				node = right ? node.getRightChild() : node.getLeftChild();
+				code = code << 1 | (right ? 1 : 0);
+				depth++;
+				continue;
+			}
+
+			if (codes != null)
+				codes.set(count, node.getValue(), code, depth == 0 ? 1 : depth);
+			count++;
+
+			/* Climb until coming up from a left child that has a right sibling */
+			while (true) {
+				if (node == root)
+					return count;
+				BTNode<Integer, String> parent = node.getParent();
+				if (parent == null)
+					return -1;
+				code >>>= 1;
+				depth--;
+				if (parent.getLeftChild() == node && parent.getRightChild() != null) {
+					node = parent.getRightChild();
+					code = code << 1 | 1;
+					depth++;
+					break;
+				}
+				node = parent;
+			}
+		}
+	}
+
+	private void set(int symbol, String name, long code, int length) {
+		codes[symbol] = code;
+		lengths[symbol] = (byte) length;
+		names[symbol] = name;
+		maxLength = Math.max(maxLength, length);
+	}
+
+	/**
+	 * @return Number of symbols
+	 */
+	public int size() {
+		return codes.length;
+	}
+
+	public long code(int symbol) {
+		return codes[symbol];
+	}
+
+	public int length(int symbol) {
+		return lengths[symbol];
+	}
+
+	public String name(int symbol) {
+		return names[symbol];
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * The code words themselves, indexed by symbol. Callers must not modify them.
+	 */
+	public long[] getCodes() {
+		return codes;
+	}
+
+	/**
+	 * The code lengths themselves, indexed by symbol. Callers must not modify them.
+	 */
+	public byte[] getLengths() {
+		return lengths;
+	}
+
+	/**
+	 * @return The code of the symbol as a string of '0' and '1' characters
+	 */
+	public String codeString(int symbol) {
+		char[] result = new char[lengths[symbol]];
+		for (int i = 0; i < result.length; i++)
+			result[i] = (codes[symbol] >>> (result.length - 1 - i) & 1) == 0 ? '0' : '1';
+		return new String(result);
+	}
+
+	/**
+	 * @return Map from the name of every symbol to its code as a String, the form
+	 *         huffman_code() returns
+	 */
+	public Map<String, String> toMap() {
+		Map<String, String> result = new HashTableOA<>(codes.length);
+		for (int symbol = 0; symbol < codes.length; symbol++)
+			result.put(names[symbol], codeString(symbol));
+		return result;
+	}
+}
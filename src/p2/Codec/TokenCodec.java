@@ -0,0 +1,178 @@
+package p2.Codec;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Huffman coding of text over tokens instead of characters: runs of letters and
+ * digits (words), runs of whitespace, and every other character on its own.
+ *
+ * A word repeated all over a log then costs a single code of a few bits rather
+ * than a code per character. Tokens are numbered and counted by a TokenInterner
+ * as they are found, and coded through a FlatHuffmanTree, which
+ * handles millions of distinct tokens where a tree holding the concatenated
+ * symbols at every node could not.
+ *
+ * Layout: magic number, number of chars, number of tokens, the dictionary (the
+ * chars of every distinct token compressed with CodePointCodec, then the
+ * length of every token as variable length integers), the CodeTable header and
+ * the encoded bits.
+ */
+public class TokenCodec {
+
+	public static final int MAGIC = 0x48554654; // "HUFT"
+
+	/**
+	 * Splits text into tokens and interns them, which also counts them.
+	 *
+	 * @return The number of every token of the text, in order
+	 */
+	public static int[] tokenize(char[] text, TokenInterner interner) {
+		long before = interner.total();
+		int[] tokens = tokens(text, interner);
+		return Arrays.copyOf(tokens, (int) (interner.total() - before));
+	}
+
+	/* tokenize() without trimming the array, the interner counts how many tokens it holds */
+	private static int[] tokens(char[] text, TokenInterner interner) {
+		int[] tokens = new int[text.length / 2 + 16]; // about one token per 2 or 3 chars in prose and logs
+		int n = 0;
+		for (int i = 0; i < text.length;) {
+			int start = i;
+			char c = text[i++];
+			int hash = c; // hashed while scanning, so the interner does not read the chars again
+			int kind = kind(c);
+			if (kind != OTHER) {
+				while (i < text.length && kind(c = text[i]) == kind) {
+					hash = 31 * hash + c;
+					i++;
+				}
+			} else if (Character.isHighSurrogate(c) && i < text.length && Character.isLowSurrogate(text[i])) {
+				/* Any other character is a token by itself, surrogate pairs included */
+				hash = 31 * hash + text[i++];
+			}
+
+			if (n == tokens.length)
+				tokens = Arrays.copyOf(tokens, tokens.length * 2);
+			tokens[n++] = interner.intern(text, start, i, hash);
+		}
+		return tokens;
+	}
+
+	/* Kind of every ASCII char, looked up instead of asking Character for the common ones */
+	private static final int OTHER = 0, WORD = 1, SPACE = 2;
+	private static final byte[] ASCII_KINDS = new byte[128];
+	static {
+		for (char c = 0; c < ASCII_KINDS.length; c++)
+			ASCII_KINDS[c] = (byte) (Character.isLetterOrDigit(c) ? WORD : Character.isWhitespace(c) ? SPACE : OTHER);
+	}
+
+	private static int kind(char c) {
+		if (c < ASCII_KINDS.length)
+			return ASCII_KINDS[c];
+		return Character.isLetterOrDigit(c) ? WORD : Character.isWhitespace(c) ? SPACE : OTHER;
+	}
+
+	/**
+	 * Compresses the text.
+	 *
+	 * @return The compressed bytes
+	 */
+	public static byte[] encode(String text) {
+		char[] chars = text.toCharArray();
+		TokenInterner interner = new TokenInterner();
+		int[] tokens = tokens(chars, interner);
+		int count = (int) interner.total();
+
+		long[] weights = new long[interner.size()];
+		for (int token = 0; token < weights.length; token++)
+			weights[token] = interner.count(token);
+		CodeTable table = CodeTable.canonical(FlatHuffmanTree.codeLengths(weights, CodeTable.MAX_CODE_LENGTH));
+		EncodedBits bits = CharEncoder.of(table).encode(tokens, 0, count);
+
+		return CodeTable.frame(out -> {
+			out.writeInt(MAGIC);
+			out.writeInt(chars.length);
+			out.writeInt(count);
+
+			byte[] dictionary = CodePointCodec.encode(new String(interner.pool(), 0, interner.poolSize()));
+			out.writeInt(dictionary.length);
+			out.write(dictionary);
+			CodeTable.writeVarInt(out, interner.size());
+			for (int token = 0; token < interner.size(); token++)
+				CodeTable.writeVarInt(out, interner.tokenLength(token));
+
+			table.writeHeader(out);
+		}, bits);
+	}
+
+	/**
+	 * Restores the text compressed by encode().
+	 *
+	 * @throws IllegalArgumentException if the bytes are not compressed tokens or
+	 *                                  are corrupt
+	 */
+	public static String decode(byte[] data) throws IllegalArgumentException {
+		ByteInput in = new ByteInput(data);
+		DataInputStream header = new DataInputStream(in);
+		int length, count;
+		char[] pool;
+		int[] offsets;
+		CodeTable table;
+		try {
+			if (header.readInt() != MAGIC)
+				throw new IllegalArgumentException("Not compressed tokens");
+			length = header.readInt();
+			count = header.readInt();
+
+			int dictionaryLength = header.readInt();
+			if (dictionaryLength < 0 || dictionaryLength > in.available())
+				throw new IllegalArgumentException("Invalid dictionary length");
+			byte[] dictionary = new byte[dictionaryLength];
+			header.readFully(dictionary);
+			pool = CodePointCodec.decode(dictionary).toCharArray();
+
+			int size = CodeTable.readVarInt(header);
+			if (size < 0 || size > pool.length)
+				throw new IllegalArgumentException("Invalid dictionary size");
+			offsets = new int[size + 1];
+			for (int token = 0; token < size; token++) {
+				offsets[token + 1] = offsets[token] + CodeTable.readVarInt(header);
+				if (offsets[token + 1] < offsets[token] || offsets[token + 1] > pool.length)
+					throw new IllegalArgumentException("Token lengths do not match the dictionary");
+			}
+			table = CodeTable.readHeader(header, size);
+			if (table.alphabetSize() > size)
+				throw new IllegalArgumentException("Code table does not match the dictionary");
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Invalid header", e);
+		}
+		if (length < 0 || count < 0 || count > length)
+			throw new IllegalArgumentException("Invalid lengths");
+
+		char[] result = new char[length];
+		int position = 0;
+		if (count > 0) {
+			long end = (long) data.length * 8;
+			BitReader bits = new BitReader(data, end);
+			bits.position((long) (data.length - in.available()) * 8);
+			DecodeTable decoder = table.decodeTable();
+			for (int i = 0; i < count; i++) {
+				int token = decoder.decodeSymbol(bits);
+				if (token < 0)
+					throw new IllegalArgumentException("Compressed tokens are corrupt");
+				int start = offsets[token], tokenLength = offsets[token + 1] - start;
+				if (position + tokenLength > length)
+					throw new IllegalArgumentException("Compressed tokens are longer than the text");
+				System.arraycopy(pool, start, result, position, tokenLength);
+				position += tokenLength;
+			}
+			if (bits.position() > end)
+				throw new IllegalArgumentException("Compressed tokens are truncated");
+		}
+		if (position != length)
+			throw new IllegalArgumentException("Compressed tokens are shorter than the text");
+		return new String(result);
+	}
+}
@@ -0,0 +1,224 @@
+package p2.Codec;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense numbers to tokens (runs of chars) in the order they are first
+ * seen, without building a String for every lookup.
+ *
+ * The chars of every distinct token are appended to a single pool. Where a
+ * token starts in the pool, its length, count and hash sit next to each other
+ * in one int array, so checking a token found in the table costs one cache
+ * miss there and one in the pool, which is what bounds interning text with
+ * hundreds of thousands of distinct tokens. The hash table is open
+ * addressing with linear probing over plain longs, each holding the hash of a
+ * token in the high half and its number + 1 in the low half, so probing only
+ * reads the table and compares chars just when the hashes match. Looking up a
+ * token that is already known allocates nothing, which is what lets it keep up
+ * with millions of tokens.
+ *
+ * Tokens of a single ASCII char, most of the punctuation and spaces of a text,
+ * skip the table through an array indexed by the char. The interner also
+ * counts how many times each token was interned, so its caller does not need
+ * a second pass over the token numbers to build their histogram.
+ */
+public class TokenInterner {
+
+	private static final int DEFAULT_SIZE = 1024;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private char[] pool;
+	private int poolSize;
+	/* Token t is records[4 * t] to records[4 * t + 3]: start in pool, length, times interned and hash */
+	private static final int START = 0, LENGTH = 1, COUNT = 2, HASH = 3, FIELDS = 4;
+	private int[] records;
+	private int size;
+	private long total; // tokens interned, repeats included
+
+	private final int[] singles = new int[128]; // number + 1 of the token of every ASCII char, 0 if not seen
+
+	private long[] table; // hash << 32 | token number + 1, 0 for empty buckets
+
+	public TokenInterner(int initialCapacity) {
+		if (initialCapacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		int buckets = Integer.highestOneBit(Math.max(2, (int) Math.min(1 << 30, initialCapacity / LOAD_FACTOR)) * 2 - 1);
+		table = new long[buckets];
+		records = new int[(int) Math.min(CodeTable.MAX_ARRAY_SIZE, (long) initialCapacity * FIELDS)];
+		pool = new char[Math.max(16, initialCapacity * 4)];
+	}
+
+	public TokenInterner() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * Returns the number of the token text[start..end), adding it if it is new.
+	 *
+	 * @return The token number, from 0 to size() - 1
+	 */
+	public int intern(char[] text, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++)
+			hash = 31 * hash + text[i];
+		return intern(text, start, end, hash);
+	}
+
+	/**
+	 * intern() for a caller that already hashed the token while finding where it
+	 * ends.
+	 *
+	 * @param hash The polynomial hash of the chars, like String.hashCode(): 31 *
+	 *             hash + c for every char c, starting from 0
+	 * @return The token number, from 0 to size() - 1
+	 */
+	public int intern(char[] text, int start, int end, int hash) {
+		total++;
+		if (end - start == 1 && text[start] < singles.length) {
+			int single = singles[text[start]] - 1;
+			if (single >= 0) {
+				records[single * FIELDS + COUNT]++;
+				return single;
+			}
+		}
+
+		hash = mix(hash);
+		int mask = table.length - 1;
+		for (int bucket = hash & mask;; bucket = (bucket + 1) & mask) {
+			long entry = table[bucket];
+			if (entry == 0)
+				return add(text, start, end, hash, bucket);
+			int token = (int) entry - 1;
+			if ((int) (entry >>> 32) == hash && equals(token, text, start, end)) {
+				records[token * FIELDS + COUNT]++;
+				return token;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of the token, -1 if it was never interned
+	 */
+	public int find(String token) {
+		char[] text = token.toCharArray();
+		int hash = mix(token.hashCode());
+		int mask = table.length - 1;
+		for (int bucket = hash & mask;; bucket = (bucket + 1) & mask) {
+			long entry = table[bucket];
+			if (entry == 0)
+				return -1;
+			int number = (int) entry - 1;
+			if ((int) (entry >>> 32) == hash && equals(number, text, 0, text.length))
+				return number;
+		}
+	}
+
+	/**
+	 * @return Number of distinct tokens
+	 */
+	public int size() {
+		return size;
+	}
+
+	public String token(int token) {
+		return new String(pool, tokenStart(token), tokenLength(token));
+	}
+
+	public int tokenStart(int token) {
+		return records[token * FIELDS + START];
+	}
+
+	public int tokenLength(int token) {
+		return records[token * FIELDS + LENGTH];
+	}
+
+	/**
+	 * @return Number of tokens interned so far, counting every repeat
+	 */
+	public long total() {
+		return total;
+	}
+
+	/**
+	 * @return Number of times the token was interned
+	 */
+	public int count(int token) {
+		return records[token * FIELDS + COUNT];
+	}
+
+	/**
+	 * The chars of every token, one after the other in token order. Callers must
+	 * not modify them.
+	 */
+	public char[] pool() {
+		return pool;
+	}
+
+	/**
+	 * @return Number of chars of all tokens together
+	 */
+	public int poolSize() {
+		return poolSize;
+	}
+
+	private int add(char[] text, int start, int end, int hash, int bucket) {
+		int length = end - start;
+		if ((long) (size + 1) * FIELDS > records.length)
+			records = Arrays.copyOf(records, (int) Math.min(CodeTable.MAX_ARRAY_SIZE, 2L * records.length + FIELDS));
+		if (poolSize + length > pool.length)
+			pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+
+		System.arraycopy(text, start, pool, poolSize, length);
+		int record = size * FIELDS;
+		records[record + START] = poolSize;
+		records[record + LENGTH] = length;
+		records[record + COUNT] = 1;
+		records[record + HASH] = hash;
+		poolSize += length;
+		if (length == 1 && text[start] < singles.length)
+			singles[text[start]] = size + 1;
+		table[bucket] = (long) hash << 32 | ++size;
+
+		if (size > table.length * LOAD_FACTOR)
+			rehash();
+		return size - 1;
+	}
+
+	/* Doubles the table, placing every token by its saved hash */
+	private void rehash() {
+		long[] bigger = new long[table.length * 2];
+		int mask = bigger.length - 1;
+		for (int token = 0; token < size; token++) {
+			int hash = records[token * FIELDS + HASH];
+			int bucket = hash & mask;
+			while (bigger[bucket] != 0)
+				bucket = (bucket + 1) & mask;
+			bigger[bucket] = (long) hash << 32 | (token + 1);
+		}
+		table = bigger;
+	}
+
+	/* A plain loop, most tokens are too short for Arrays.equals() to pay off */
+	private boolean equals(int token, char[] text, int start, int end) {
+		int record = token * FIELDS;
+		if (records[record + LENGTH] != end - start)
+			return false;
+		int offset = records[record + START];
+		char[] pool = this.pool;
+		for (int i = start; i < end; i++) {
+			if (pool[offset++] != text[i])
+				return false;
+		}
+		return true;
+	}
+
+	/* Mixes the polynomial hash of the chars (MurmurHash3's finalizer) so all of its bits affect the bucket */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
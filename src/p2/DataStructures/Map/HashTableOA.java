@@ -0,0 +1,223 @@
+package p2.DataStructures.Map;
+
+import java.io.PrintStream;
+
+import p2.DataStructures.List.ArrayList;
+import p2.DataStructures.List.List;
+
+/**
+ * Implementation of the Hash Table ADT using an
+ * Open Addressing Collision Handling Scheme (Linear Probing).
+ *
+ * Keys and values are stored in two parallel arrays whose length is always a
+ * power of two, so the bucket of a key is its hash masked with length - 1. The
+ * hash code is mixed before masking so keys whose codes only differ in the high
+ * bits still spread over the table. Removing a key shifts back the keys that
+ * probed past it, so there are no tombstones and lookups never slow down.
+ *
+ * @param <K> Generic value for keys to insert.
+ * @param <V> Generic value for values mapped to a certain key K.
+ */
+public class HashTableOA<K, V> implements Map<K, V> {
+
+	// private fields
+	private int currentSize;
+	private K[] keys;
+	private V[] values;
+	private int mask;
+	private int threshold;
+	private HashFunction<K> hashFunction;
+	private final static double loadFactor = 0.75;
+	private static final int DEFAULT_SIZE = 16;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	@SuppressWarnings("unchecked")
+	public HashTableOA(int initialCapacity, HashFunction<K> hashFunction) {
+		if (initialCapacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		if (hashFunction == null)
+			throw new IllegalArgumentException("Hash function cannot be null");
+
+		/* Smallest power of two that holds initialCapacity keys without passing the load factor */
+		int capacity = 2;
+		while (capacity < MAXIMUM_CAPACITY && capacity * loadFactor < initialCapacity)
+			capacity <<= 1;
+
+		currentSize = 0;
+		this.hashFunction = hashFunction;
+		keys = (K[]) new Object[capacity];
+		values = (V[]) new Object[capacity];
+		mask = capacity - 1;
+		threshold = (int) (capacity * loadFactor);
+	}
+
+	public HashTableOA(HashFunction<K> hashFunction) {
+		//delegate to this constructor if no capacity is entered by user
+		this(DEFAULT_SIZE, hashFunction);
+	}
+
+	public HashTableOA(int initialCapacity) {
+		this(initialCapacity, Object::hashCode);
+	}
+
+	public HashTableOA() {
+		this(DEFAULT_SIZE);
+	}
+
+	@Override
+	public V get(K key) {
+		if (key == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int slot = find(key);
+		return slot < 0 ? null : values[slot];
+	}
+
+	@Override
+	public void put(K key, V value) {
+		if (key == null || value == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		/* Probe from the key's bucket until we find the key or an empty slot */
+		int slot = bucket(key);
+		while (keys[slot] != null) {
+			if (keys[slot].equals(key)) { // Already there, just replace the value
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+		if (++currentSize > threshold)
+			rehash();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void rehash() {
+		if (keys.length == MAXIMUM_CAPACITY)
+			throw new IllegalStateException("Hash table is full");
+
+		K[] oldKeys = keys;
+		V[] oldValues = values;
+		keys = (K[]) new Object[oldKeys.length * 2];
+		values = (V[]) new Object[oldKeys.length * 2];
+		mask = keys.length - 1;
+		threshold = (int) (keys.length * loadFactor);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				/* Keys are known to be distinct, so just take the first empty slot */
+				int slot = bucket(oldKeys[i]);
+				while (keys[slot] != null)
+					slot = (slot + 1) & mask;
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	@Override
+	public V remove(K key) {
+		if (key == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int slot = find(key);
+		if (slot < 0)
+			return null;
+		V result = values[slot];
+
+		/*
+		 * Fill the hole with the next key in the run that would still be found from
+		 * its bucket, and repeat with the hole that key leaves, until the run ends.
+		 */
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (keys[next] != null) {
+			int home = bucket(keys[next]);
+			/* The key can move back unless its bucket lies cyclically in (hole, next] */
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[hole] = null;
+		values[hole] = null;
+		currentSize--;
+		return result;
+	}
+
+	@Override
+	public boolean containsKey(K key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public List<K> getKeys() {
+		List<K> result = new ArrayList<K>(Math.max(1, size()));
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != null)
+				result.add(keys[i]);
+		return result;
+	}
+
+	@Override
+	public List<V> getValues() {
+		List<V> result = new ArrayList<V>(Math.max(1, size()));
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != null)
+				result.add(values[i]);
+		return result;
+	}
+
+	@Override
+	public int size() {
+		return currentSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public void clear() {
+		currentSize = 0;
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = null;
+			values[i] = null;
+		}
+	}
+
+	@Override
+	public void print(PrintStream out) {
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != null)
+				out.printf("(%s, %s)\n", keys[i], values[i]);
+	}
+
+	/* Slot that holds key, or -1 if it is not in the table */
+	private int find(K key) {
+		int slot = bucket(key);
+		while (keys[slot] != null) {
+			if (keys[slot].equals(key)) // Found it!
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/* Mixes the bits of the hash code (MurmurHash3's finalizer) so all of them affect the bucket */
+	private int bucket(K key) {
+		int h = hashFunction.hashCode(key);
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h & mask;
+	}
+}
@@ -0,0 +1,119 @@
+package p2.DataStructures.PriorityQueue;
+
+import java.util.Arrays;
+
+/**
+ * Implementation of a Priority Queue using an array-based binary min heap
+ * 
+ * add() and removeMin() take O(log n) time. Values that compare as equal are
+ * all kept, and come out in the same order they were added, so the order in
+ * which values are removed is always deterministic.
+ * 
+ * @param <E> Generic comparable data type for elements to insert
+ */
+public class HeapPriorityQueue<E extends Comparable<? super E>> implements PriorityQueue<E> {
+
+	// private fields
+	private E[] elements;
+	private long[] order; // insertion number of each element, breaks ties
+	private long added;
+	private int currentSize;
+
+	private static final int DEFAULT_SIZE = 11;
+
+	@SuppressWarnings("unchecked")
+	public HeapPriorityQueue(int initialCapacity) {
+		if (initialCapacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		elements = (E[]) new Comparable<?>[initialCapacity];
+		order = new long[initialCapacity];
+		currentSize = 0;
+		added = 0;
+	}
+
+	public HeapPriorityQueue() {
+		this(DEFAULT_SIZE);
+	}
+
+	@Override
+	public void add(E e) throws IllegalArgumentException {
+		if (e == null)
+			throw new IllegalArgumentException("Value cannot be null");
+		if (currentSize == elements.length) {
+			elements = Arrays.copyOf(elements, 2 * elements.length);
+			order = Arrays.copyOf(order, 2 * order.length);
+		}
+
+		/* Add the value as the last leaf and move it up until its parent is smaller */
+		int index = currentSize++;
+		long number = added++;
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (!less(e, number, elements[parent], order[parent]))
+				break;
+			elements[index] = elements[parent];
+			order[index] = order[parent];
+			index = parent;
+		}
+		elements[index] = e;
+		order[index] = number;
+	}
+
+	@Override
+	public E min() {
+		return isEmpty() ? null : elements[0];
+	}
+
+	@Override
+	public E removeMin() {
+		if (isEmpty())
+			return null;
+
+		E result = elements[0];
+		E last = elements[--currentSize];
+		long lastOrder = order[currentSize];
+		elements[currentSize] = null;
+
+		/* Move the last leaf down from the root until both children are larger */
+		int index = 0;
+		int half = currentSize / 2;
+		while (index < half) {
+			int child = 2 * index + 1;
+			int right = child + 1;
+			if (right < currentSize && less(elements[right], order[right], elements[child], order[child]))
+				child = right;
+			if (!less(elements[child], order[child], last, lastOrder))
+				break;
+			elements[index] = elements[child];
+			order[index] = order[child];
+			index = child;
+		}
+		if (currentSize > 0) {
+			elements[index] = last;
+			order[index] = lastOrder;
+		}
+		return result;
+	}
+
+	@Override
+	public int size() {
+		return currentSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(elements, 0, currentSize, null);
+		currentSize = 0;
+	}
+
+	/* Compare values first, and the order they were added in when they are equal */
+	private static <E extends Comparable<? super E>> boolean less(E a, long orderA, E b, long orderB) {
+		int result = a.compareTo(b);
+		return result < 0 || (result == 0 && orderA < orderB);
+	}
+}
@@ -4,11 +4,39 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
+
+import p2.Codec.BitReader;
+import p2.Codec.BlockCodec;
+import p2.Codec.ByteCodec;
+import p2.Codec.CharEncoder;
+import p2.Codec.CodePointCodec;
+import p2.Codec.CodeTable;
+import p2.Codec.ContextCodec;
+import p2.Codec.DecodeTable;
+import p2.Codec.EncodedBits;
+import p2.Codec.EncodedBlocks;
+import p2.Codec.Histogram;
+import p2.Codec.InterleavedStreams;
+import p2.Codec.LZ77Compressor;
+import p2.Codec.LengthLimitedCodes;
+import p2.Codec.MappedCompressor;
+import p2.Codec.ParallelHistogram;
+import p2.Codec.RunLengthTransform;
+import p2.Codec.StreamCompressor;
+import p2.Codec.SymbolCodes;
+import p2.Codec.TokenCodec;
 import p2.DataStructures.List.List;
-import p2.DataStructures.Map.HashTableSC;
+import p2.DataStructures.Map.HashTableOA;
 import p2.DataStructures.Map.Map;
+import p2.DataStructures.PriorityQueue.HeapPriorityQueue;
+import p2.DataStructures.PriorityQueue.PriorityQueue;
 import p2.DataStructures.SortedList.SortedLinkedList;
 import p2.DataStructures.SortedList.SortedList;
 import p2.DataStructures.Tree.BTNode;
@@ -46,6 +74,8 @@ public class HuffmanCoding {
 		if (!data.isEmpty()) {
 			Map<String, Integer> fD = compute_fd(data);
 			BTNode<Integer, String> huffmanRoot = huffman_tree(fD);
+			/* Print the Huffman Tree for debugging purposes. */
+			BinaryTreePrinter.print(huffmanRoot);
 			Map<String, String> encodedHuffman = huffman_code(huffmanRoot);
 			String output = encode(encodedHuffman, data);
 			process_results(fD, encodedHuffman, data, output);
@@ -95,6 +125,301 @@ public class HuffmanCoding {
 		return line;
 	}
 
+	/**
+	 * Compresses a file without ever loading its contents into a String.
+	 * 
+	 * The file is read in fixed-size chunks, once to compute the frequency
+	 * distribution of its bytes and once more to encode them, and the packed bits
+	 * are written to the output file. This is what allows compressing multi-line
+	 * files and files larger than the heap.
+	 * 
+	 * @param inputFile  name of the file to be compressed in the path inputData/
+	 * @param outputFile path of the compressed file to create
+	 * @return number of bytes written to the output file, -1 if it failed
+	 */
+	public static long compress_file(String inputFile, String outputFile) {
+		try {
+			return new StreamCompressor().compress(Paths.get("inputData/" + inputFile), Paths.get(outputFile));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return -1;
+	}
+
+	/**
+	 * Restores a file written by compress_file().
+	 * 
+	 * The compressed file only stores the code length of every byte, which is
+	 * enough to rebuild the canonical prefix codes and decode the rest of the file
+	 * without building the Huffman tree again.
+	 * 
+	 * @param inputFile  path of the compressed file
+	 * @param outputFile path of the restored file to create
+	 * @return number of bytes written to the output file, -1 if it failed
+	 */
+	public static long decompress_file(String inputFile, String outputFile) {
+		try {
+			return new StreamCompressor().decompress(Paths.get(inputFile), Paths.get(outputFile));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return -1;
+	}
+
+	/**
+	 * Compresses a file from the "inputData" directory by mapping it into memory
+	 * instead of reading it, counting and encoding the mapped bytes in parallel
+	 * blocks. Meant for files larger than the heap.
+	 * 
+	 * @param inputFile  name of the file in the "inputData" directory
+	 * @param outputFile path of the compressed file to create
+	 * @return number of bytes written to the output file, -1 if it failed
+	 */
+	public static long compress_file_mapped(String inputFile, String outputFile) {
+		try {
+			return new MappedCompressor().compress(Paths.get("inputData/" + inputFile), Paths.get(outputFile));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return -1;
+	}
+
+	/**
+	 * Restores a file written by compress_file_mapped(), decoding its blocks in
+	 * parallel.
+	 * 
+	 * @param inputFile  path of the compressed file
+	 * @param outputFile path of the restored file to create
+	 * @return number of bytes written to the output file, -1 if it failed
+	 */
+	public static long decompress_file_mapped(String inputFile, String outputFile) {
+		try {
+			return new MappedCompressor().decompress(Paths.get(inputFile), Paths.get(outputFile));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return -1;
+	}
+
+	/**
+	 * Receives a file named in parameter inputFile and returns its raw bytes, for
+	 * the byte entry points below. Nothing is decoded, so any kind of file works.
+	 * 
+	 * @param inputFile name of the file to be processed in the path inputData/
+	 * @return The bytes of the file, an empty array if it cannot be read
+	 */
+	public static byte[] load_bytes(String inputFile) {
+		try {
+			return Files.readAllBytes(Paths.get("inputData/" + inputFile));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return new byte[0];
+	}
+
+	/**
+	 * Compresses raw bytes with codes for the 256 byte values, skipping the
+	 * conversion to a String and back.
+	 * 
+	 * @param data bytes to compress
+	 * @return The compressed bytes, in the same layout compress_file() writes
+	 */
+	public static byte[] compress_bytes(byte[] data) {
+		return new ByteCodec().compress(data);
+	}
+
+	/**
+	 * Restores bytes compressed by compress_bytes() or a file written by
+	 * compress_file().
+	 * 
+	 * @param compressed compressed bytes
+	 * @return The original bytes
+	 * @throws IllegalArgumentException If the bytes are not compressed data.
+	 */
+	public static byte[] decompress_bytes(byte[] compressed) throws IllegalArgumentException {
+		return new ByteCodec().decompress(compressed);
+	}
+
+	/**
+	 * Compresses bytes with a code table per preceding byte (order-1), which pays
+	 * off on text where what follows a character depends on it, like the letter
+	 * after 'q' or the start of a line.
+	 * 
+	 * @param data bytes to compress
+	 * @return The compressed bytes, with every code table
+	 */
+	public static byte[] compress_order1(byte[] data) {
+		return ContextCodec.encode(data);
+	}
+
+	/**
+	 * Restores bytes compressed by compress_order1().
+	 * 
+	 * @param compressed compressed bytes
+	 * @return The original bytes
+	 * @throws IllegalArgumentException If the bytes are not compressed with
+	 *                                  contexts.
+	 */
+	public static byte[] decompress_order1(byte[] compressed) throws IllegalArgumentException {
+		return ContextCodec.decode(compressed);
+	}
+
+	/**
+	 * Compresses bytes DEFLATE style: repeated strings are replaced by the length
+	 * and distance of an earlier copy (LZ77), and the literals, lengths and
+	 * distances are Huffman coded with tables built by huffman_tree() and
+	 * huffman_code().
+	 * 
+	 * @param data       bytes to compress
+	 * @param windowSize how far back repeated strings are looked for, a power of
+	 *                   two from 256 to 16 MB
+	 * @param effort     from 1 (fastest) to 9 (smallest output)
+	 * @return The compressed bytes
+	 * @throws IllegalArgumentException If the window size or the effort are not
+	 *                                  valid.
+	 */
+	public static byte[] compress_lz77(byte[] data, int windowSize, int effort) throws IllegalArgumentException {
+		return new LZ77Compressor(windowSize, effort).compress(data);
+	}
+
+	/**
+	 * Same as compress_lz77(data, windowSize, effort) with a 32 KB window, like
+	 * DEFLATE, and effort 6.
+	 */
+	public static byte[] compress_lz77(byte[] data) {
+		return new LZ77Compressor().compress(data);
+	}
+
+	/**
+	 * Restores bytes compressed by compress_lz77().
+	 * 
+	 * @param compressed compressed bytes
+	 * @return The original bytes
+	 * @throws IllegalArgumentException If the bytes are not LZ77 compressed.
+	 */
+	public static byte[] decompress_lz77(byte[] compressed) throws IllegalArgumentException {
+		return LZ77Compressor.decompress(compressed);
+	}
+
+	/**
+	 * Compresses everything left in a stream in blocks of 1 MB. Neither stream is
+	 * closed.
+	 * 
+	 * @param in  stream to compress
+	 * @param out stream to write the compressed blocks to
+	 * @return number of bytes written, -1 if it failed
+	 */
+	public static long compress_stream(InputStream in, OutputStream out) {
+		try {
+			return new ByteCodec().compress(in, out);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return -1;
+	}
+
+	/**
+	 * Restores a stream written by compress_stream(). Neither stream is closed.
+	 * 
+	 * @param in  stream with the compressed blocks
+	 * @param out stream to write the original bytes to
+	 * @return number of bytes written, -1 if it failed
+	 */
+	public static long decompress_stream(InputStream in, OutputStream out) {
+		try {
+			return new ByteCodec().decompress(in, out);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return -1;
+	}
+
+	/**
+	 * Compresses any string without losing a character, over its Unicode code
+	 * points instead of the categories compute_fd() groups characters into.
+	 * Characters outside the BMP, like emoji, are coded as one symbol each.
+	 * 
+	 * @param inputString the string to compress
+	 * @return The compressed bytes, with the alphabet and codes they need
+	 */
+	public static byte[] compress_unicode(String inputString) {
+		if (inputString == null) {
+			throw new IllegalArgumentException("Input string cannot be null");
+		}
+		return CodePointCodec.encode(inputString);
+	}
+
+	/**
+	 * Restores a string compressed by compress_unicode().
+	 * 
+	 * @param compressed compressed bytes
+	 * @return The original string
+	 * @throws IllegalArgumentException If the bytes are not compressed text.
+	 */
+	public static String decompress_unicode(byte[] compressed) throws IllegalArgumentException {
+		return CodePointCodec.decode(compressed);
+	}
+
+	/**
+	 * Compresses a string over its words, whitespace runs and punctuation instead
+	 * of its characters, which pays off on text that repeats the same words, like
+	 * server logs.
+	 * 
+	 * @param inputString the string to compress
+	 * @return The compressed bytes, with the dictionary of tokens and their codes
+	 */
+	public static byte[] compress_tokens(String inputString) {
+		if (inputString == null) {
+			throw new IllegalArgumentException("Input string cannot be null");
+		}
+		return TokenCodec.encode(inputString);
+	}
+
+	/**
+	 * Restores a string compressed by compress_tokens().
+	 * 
+	 * @param compressed compressed bytes
+	 * @return The original string
+	 * @throws IllegalArgumentException If the bytes are not compressed tokens.
+	 */
+	public static String decompress_tokens(byte[] compressed) throws IllegalArgumentException {
+		return TokenCodec.decode(compressed);
+	}
+
+	/**
+	 * Optional stage before compute_fd() that replaces every run of 3 or more
+	 * equal characters with the character and escape symbols for the length of
+	 * the run, so a long run costs a few codes instead of one per character, and
+	 * the stages after it have fewer symbols to go through.
+	 * 
+	 * @param inputString the string to transform
+	 * @return The string with its runs replaced, to be passed to compute_fd() and
+	 *         encode()
+	 * @throws IllegalArgumentException If the string has one of the characters
+	 *                                  reserved for the escape symbols (U+FDD0 to
+	 *                                  U+FDDF).
+	 */
+	public static String run_length_encode(String inputString) throws IllegalArgumentException {
+		if (inputString == null) {
+			throw new IllegalArgumentException("Input string cannot be null");
+		}
+		return RunLengthTransform.encode(inputString);
+	}
+
+	/**
+	 * Restores the runs replaced by run_length_encode(), after decodeHuff().
+	 * 
+	 * @param decoded the decoded string
+	 * @return The string with its runs expanded
+	 * @throws IllegalArgumentException If the escape symbols are not valid.
+	 */
+	public static String run_length_decode(String decoded) throws IllegalArgumentException {
+		if (decoded == null) {
+			throw new IllegalArgumentException("Decoded string cannot be null");
+		}
+		return RunLengthTransform.decode(decoded);
+	}
+
 	/**
 	 * Computes the frequency distribution of characters in a given string and
 	 * returns it as a map.
@@ -105,57 +430,61 @@ public class HuffmanCoding {
 	 *         input string.
 	 */
 	public static Map<String, Integer> compute_fd(String inputString) {
-		HashTableSC<String, Integer> result = new HashTableSC<>();
-
 		// If the input string is null or empty, return an error message.
 		if (inputString == null || inputString.isEmpty()) {
+			HashTableOA<String, Integer> result = new HashTableOA<>();
 			result.put("Error", -1);
 			return result;
 		}
 
-		// Loop through each character in the input string and compute its frequency
-		// distribution.
-		for (char c : inputString.toCharArray()) {
-			String character;
-			if (Character.isWhitespace(c)) {
-				// If the character is whitespace, categorize it as "Space", "Tab", "Newline",
-				// or "Other".
-				if (c == ' ') {
-					character = "Space";
-				} else if (c == '\t') {
-					character = "Tab";
-				} else if (c == '\n') {
-					character = "Newline";
-				} else {
-					character = "Other";
-				}
-			} else if (Character.isLetterOrDigit(c)) {
-				// If the character is a letter or digit, use it as the category.
-				character = Character.toString(c);
+		// Count every character into a flat array first, which needs no String per
+		// character and no hash lookups, and only build the map from the counts,
+		// adding together the characters that fall in the same category. Long
+		// strings are split in chunks that are counted in parallel.
+		Histogram histogram = new ParallelHistogram().countChars(inputString);
+		return histogram.toFrequencyMap(c -> compute_fdHelper((char) c));
+	}
+
+	/**
+	 * Helper function that returns the symbol compute_fd() counts a character as.
+	 * 
+	 * @param c character from the input string
+	 * @return the character itself for letters and digits, or the name of its
+	 *         category otherwise
+	 */
+	public static String compute_fdHelper(char c) {
+		if (RunLengthTransform.isEscape(c)) {
+			// Run lengths written by run_length_encode() keep a symbol of their own, so
+			// they can be told apart after decoding.
+			return Character.toString(c);
+		} else if (Character.isWhitespace(c)) {
+			// If the character is whitespace, categorize it as "Space", "Tab", "Newline",
+			// or "Other".
+			if (c == ' ') {
+				return "Space";
+			} else if (c == '\t') {
+				return "Tab";
+			} else if (c == '\n') {
+				return "Newline";
 			} else {
-				// If the character is not whitespace or a letter/digit, categorize it as
-				// "Quote", "Bracket", "Punctuation", or "Other".
-				if (c == '\'' || c == '\"') {
-					character = "Quote";
-				} else if (c == '(' || c == ')' || c == '[' || c == ']' || c == '{' || c == '}') {
-					character = "Bracket";
-				} else if (c == ',' || c == '.' || c == ';' || c == ':') {
-					character = "Punctuation";
-				} else {
-					character = "Other";
-				}
+				return "Other";
 			}
-
-			// Increment the frequency count for the character in the result map.
-			if (result.containsKey(character)) {
-				result.put(character, result.get(character) + 1);
+		} else if (Character.isLetterOrDigit(c)) {
+			// If the character is a letter or digit, use it as the category.
+			return Character.toString(c);
+		} else {
+			// If the character is not whitespace or a letter/digit, categorize it as
+			// "Quote", "Bracket", "Punctuation", or "Other".
+			if (c == '\'' || c == '\"') {
+				return "Quote";
+			} else if (c == '(' || c == ')' || c == '[' || c == ']' || c == '{' || c == '}') {
+				return "Bracket";
+			} else if (c == ',' || c == '.' || c == ';' || c == ':') {
+				return "Punctuation";
 			} else {
-				result.put(character, 1);
+				return "Other";
 			}
 		}
-
-		// Return the frequency distribution map.
-		return result;
 	}
 
 	/**
@@ -163,6 +492,12 @@ public class HuffmanCoding {
 	 * which maps symbols to their frequency in a dataset. The method returns the
 	 * root node of the resulting tree.
 	 * 
+	 * The nodes are kept in a binary heap, so building the tree takes O(n log n)
+	 * time for n symbols. Nodes with the same frequency are ordered by their
+	 * symbols, and nodes that compare as equal are merged in the order they were
+	 * added, so the same distribution always gives the same tree and no node is
+	 * ever dropped.
+	 * 
 	 * @param frequencyDistribution A map that contains the frequency of each symbol
 	 *                              in the dataset.
 	 * @return The root node of the Huffman Tree that represents the given frequency
@@ -174,9 +509,9 @@ public class HuffmanCoding {
 			return null;
 		}
 
-		// Create a sorted linked list of BTNodes, where each node corresponds to a
+		// Create a priority queue of BTNodes, where each node corresponds to a
 		// symbol in the frequency distribution map.
-		SortedLinkedList<BTNode<Integer, String>> treeList = new SortedLinkedList<>();
+		PriorityQueue<BTNode<Integer, String>> treeQueue = new HeapPriorityQueue<>(frequencyDistribution.size());
 		for (String symbol : frequencyDistribution.getKeys()) {
 			// Get the frequency of the current symbol. If it's negative, set it to 0.
 			int frequency = frequencyDistribution.get(symbol);
@@ -190,32 +525,16 @@ public class HuffmanCoding {
 			node.setKey(frequency);
 			node.setValue(symbol);
 
-			// Add the new node to the sorted linked list.
-			treeList.add(node);
+			// Add the new node to the priority queue.
+			treeQueue.add(node);
 		}
 
-		// If the sorted linked list is empty, return null.
-		if (treeList.isEmpty()) {
-			return null;
-		}
-
-		// Build the Huffman Tree by merging the nodes in the sorted linked list until
+		// Build the Huffman Tree by merging the nodes in the priority queue until
 		// there is only one node left.
-		BTNode<Integer, String> rootNode = null;
-		while (!treeList.isEmpty()) {
-			// Get the two nodes with the smallest keys (i.e., frequencies) from the sorted
-			// linked list.
-			BTNode<Integer, String> node1 = treeList.get(0);
-			treeList.remove(node1);
-
-			// If there is only one node left, it is the root node of the Huffman Tree.
-			if (treeList.isEmpty()) {
-				rootNode = node1;
-				break;
-			}
-
-			BTNode<Integer, String> node2 = treeList.get(0);
-			treeList.remove(node2);
+		while (treeQueue.size() > 1) {
+			// Get the two nodes with the smallest keys (i.e., frequencies) from the queue.
+			BTNode<Integer, String> node1 = treeQueue.removeMin();
+			BTNode<Integer, String> node2 = treeQueue.removeMin();
 
 			// Create a new parent node for the two nodes with the sum of their keys as its
 			// key and the concatenation of their values as its value.
@@ -229,15 +548,81 @@ public class HuffmanCoding {
 			node1.setParent(parent);
 			node2.setParent(parent);
 
-			// Add the parent node to the sorted linked list.
-			treeList.add(parent);
+			// Add the parent node to the priority queue.
+			treeQueue.add(parent);
 		}
 
-		// Print the Huffman Tree for debugging purposes.
-		BinaryTreePrinter.print(rootNode);
+		// The only node left is the root node of the Huffman Tree.
+		return treeQueue.removeMin();
+	}
 
-		// Return the root node of the Huffman Tree.
-		return rootNode;
+	/**
+	 * Builds a prefix code tree like huffman_tree(), but with no leaf deeper than
+	 * maxLength, so huffman_code() never generates a code longer than that.
+	 * 
+	 * The depths come from the package-merge algorithm, which gives the smallest
+	 * encoded size possible under the limit. The tree is then laid out as the
+	 * canonical code for those depths, with the same keys (sum of frequencies)
+	 * and values (concatenated symbols) huffman_tree() uses.
+	 * 
+	 * @param frequencyDistribution A map that contains the frequency of each symbol
+	 *                              in the dataset.
+	 * @param maxLength             Longest code allowed, e.g. 11, 12 or 15 bits.
+	 * @return The root node of the tree, null if the map is null or empty.
+	 * @throws IllegalArgumentException If there are more than 2^maxLength symbols.
+	 */
+	public static BTNode<Integer, String> huffman_tree(Map<String, Integer> frequencyDistribution, int maxLength) {
+		if (frequencyDistribution == null || frequencyDistribution.isEmpty()) {
+			return null;
+		}
+
+		List<String> symbols = frequencyDistribution.getKeys();
+		int[] frequencies = new int[symbols.size()];
+		for (int i = 0; i < frequencies.length; i++) {
+			// Symbols that never appear still need a code, just like in huffman_tree()
+			frequencies[i] = Math.max(1, frequencyDistribution.get(symbols.get(i)));
+		}
+
+		// A single symbol is a single leaf, which huffman_code() gives the code "0"
+		if (frequencies.length == 1) {
+			return new BTNode<>(frequencies[0], symbols.get(0));
+		}
+
+		// Add one leaf per symbol at the end of the path given by its canonical code
+		CodeTable table = CodeTable.canonical(LengthLimitedCodes.lengths(frequencies, maxLength));
+		BTNode<Integer, String> root = new BTNode<>();
+		for (int i = 0; i < frequencies.length; i++) {
+			BTNode<Integer, String> node = root;
+			for (int bit = table.getLength(i) - 1; bit >= 0; bit--) {
+				boolean right = (table.getCode(i) >>> bit & 1) == 1;
+				BTNode<Integer, String> child = right ? node.getRightChild() : node.getLeftChild();
+				if (child == null) {
+					child = new BTNode<>();
+					child.setParent(node);
+					if (right)
+						node.setRightChild(child);
+					else
+						node.setLeftChild(child);
+				}
+				node = child;
+			}
+			node.setKey(frequencies[i]);
+			node.setValue(symbols.get(i));
+		}
+
+		sumSubtrees(root);
+		return root;
+	}
+
+	/* Sets the key and value of every internal node from its children, like huffman_tree() does */
+	private static void sumSubtrees(BTNode<Integer, String> node) {
+		if (node.getLeftChild() == null) {
+			return;
+		}
+		sumSubtrees(node.getLeftChild());
+		sumSubtrees(node.getRightChild());
+		node.setKey(node.getLeftChild().getKey() + node.getRightChild().getKey());
+		node.setValue(node.getLeftChild().getValue() + node.getRightChild().getValue());
 	}
 
 	/**
@@ -248,11 +633,19 @@ public class HuffmanCoding {
 	 */
 	public static Map<String, String> huffman_code(BTNode<Integer, String> huffmanRoot) {
 		if (huffmanRoot == null) {
-			return new HashTableSC<>();
+			return new HashTableOA<>();
+		}
+
+		// Read the codes off the tree as long code words without building a String per
+		// node, then turn them into Strings once per symbol. Trees deeper than a long,
+		// or built without parent links, fall back to the recursive helper
+		SymbolCodes codes = SymbolCodes.tryOf(huffmanRoot);
+		if (codes != null) {
+			return codes.toMap();
 		}
 
 		// Create an empty hash table to store the codes
-		HashTableSC<String, String> code = new HashTableSC<>();
+		HashTableOA<String, String> code = new HashTableOA<>();
 
 		try {
 			// Call the helper function to recursively traverse the Huffman tree and
@@ -266,6 +659,19 @@ public class HuffmanCoding {
 		return code;
 	}
 
+	/**
+	 * Generates the Huffman codes of the given tree as a long code word and a
+	 * length per symbol, the form the bit-level encoders use.
+	 * 
+	 * @param huffmanRoot The root node of the Huffman tree, as built by
+	 *                    huffman_tree().
+	 * @return The code of every leaf, numbered from left to right.
+	 * @throws IllegalArgumentException If the tree is deeper than 64 levels.
+	 */
+	public static SymbolCodes huffman_code_table(BTNode<Integer, String> huffmanRoot) throws IllegalArgumentException {
+		return SymbolCodes.of(huffmanRoot);
+	}
+
 	/**
 	 * Helper function to generate Huffman codes recursively.
 	 * 
@@ -273,15 +679,16 @@ public class HuffmanCoding {
 	 * @param root   The current node being traversed in the Huffman tree.
 	 * @param prefix The current prefix for the code.
 	 */
-	public static void huffman_codeHelper(HashTableSC<String, String> code, BTNode<Integer, String> root,
+	public static void huffman_codeHelper(Map<String, String> code, BTNode<Integer, String> root,
 			String prefix) {
 		if (root == null) {
 			return;
 		}
 
-		// If the node is a leaf, add the symbol and its code to the hash table
+		// If the node is a leaf, add the symbol and its code to the hash table. A tree
+		// with a single symbol still needs one bit per symbol, so it gets code "0"
 		if (root.getLeftChild() == null && root.getRightChild() == null) {
-			code.put(root.getValue(), prefix);
+			code.put(root.getValue(), prefix.isEmpty() ? "0" : prefix);
 			return;
 		}
 
@@ -316,17 +723,167 @@ public class HuffmanCoding {
 			return "";
 		}
 
+		// Look the codes up by char in an array instead of hashing a new String for
+		// every character
+		String[] codes = codeArray(encodingMap);
+
 		// Encode each character in the input string using the encoding map
 		StringBuilder result = new StringBuilder(inputString.length());
 		for (int i = 0; i < inputString.length(); i++) {
-			String character = String.valueOf(inputString.charAt(i));
-			result.append(encodingMap.get(character));
+			char character = inputString.charAt(i);
+			result.append(character < codes.length ? codes[character] : null);
 		}
 
 		// Return the encoded string
 		return result.toString();
 	}
 
+	/**
+	 * Encodes an input string using the given Huffman encoding map, either as a
+	 * single stream like encode() or as 4 interleaved streams that
+	 * decodeHuff(output, lookupTable, 4) can decode in parallel.
+	 * 
+	 * @param encodingMap The Huffman encoding map.
+	 * @param inputString The input string to be encoded.
+	 * @param streams     1 or 4.
+	 * @return The encoded string.
+	 * @throws IllegalArgumentException If a parameter is null or not valid, or, with
+	 *                                  4 streams, a character has no code.
+	 */
+	public static String encode(Map<String, String> encodingMap, String inputString, int streams)
+			throws IllegalArgumentException {
+		if (check_streams(streams) == 1) {
+			return encode(encodingMap, inputString);
+		}
+		return encode_bits(encodingMap, inputString, streams).toBitString();
+	}
+
+	/**
+	 * Copies the codes of the single character symbols of a map into an array
+	 * indexed by char.
+	 * 
+	 * @param encodingMap The Huffman encoding map.
+	 * @return The code of every char, null if it has none.
+	 */
+	private static String[] codeArray(Map<String, String> encodingMap) {
+		List<String> keys = encodingMap.getKeys();
+		int size = 0;
+		for (String key : keys) {
+			if (key.length() == 1) {
+				size = Math.max(size, key.charAt(0) + 1);
+			}
+		}
+
+		String[] codes = new String[size];
+		for (String key : keys) {
+			if (key.length() == 1) {
+				codes[key.charAt(0)] = encodingMap.get(key);
+			}
+		}
+		return codes;
+	}
+
+	/**
+	 * Encodes an input string using the given Huffman encoding map, packing the
+	 * prefix codes into bits instead of '0' and '1' characters.
+	 * 
+	 * The result takes 1/8th of the memory the string from encode() takes for the
+	 * same input, and records the exact number of encoded bits.
+	 * 
+	 * @param encodingMap The Huffman encoding map, mapping symbols to their
+	 *                    corresponding codes.
+	 * @param inputString The input string to be encoded.
+	 * @return The encoded bits
+	 * @throws IllegalArgumentException If either parameter is null or a character
+	 *                                  of the input has no code in the map.
+	 */
+	public static EncodedBits encode_bits(Map<String, String> encodingMap, String inputString)
+			throws IllegalArgumentException {
+		// Check for null parameters
+		if (encodingMap == null) {
+			throw new IllegalArgumentException("Encoding map cannot be null");
+		}
+
+		if (inputString == null) {
+			throw new IllegalArgumentException("Input string cannot be null");
+		}
+
+		// Put the codes in arrays indexed by char, so encoding a character needs no
+		// String and no hashing, then pack the codes of the input string
+		return CharEncoder.of(encodingMap).encode(inputString);
+	}
+
+	/**
+	 * Encodes an input string like encode_bits(), split into independent blocks
+	 * of blockSize chars that are encoded in parallel on the common pool, with an
+	 * index of where every block starts.
+	 * 
+	 * @param encodingMap The Huffman encoding map shared by all blocks.
+	 * @param inputString The input string to be encoded.
+	 * @param blockSize   Chars per block, at least 1.
+	 * @return The encoded blocks and their index
+	 * @throws IllegalArgumentException If a parameter is null or not valid, or a
+	 *                                  character has no code.
+	 */
+	public static EncodedBlocks encode_blocks(Map<String, String> encodingMap, String inputString, int blockSize)
+			throws IllegalArgumentException {
+		return new BlockCodec(blockSize).encode(encodingMap, inputString);
+	}
+
+	/**
+	 * Decodes the blocks made by encode_blocks(), one block per task.
+	 * 
+	 * @param encoded     Encoded blocks
+	 * @param lookupTable Prefix Code Map used to encode the blocks
+	 * @return The decoded String
+	 * @throws IllegalArgumentException If a parameter is null or a block does not
+	 *                                  decode.
+	 */
+	public static String decode_blocks(EncodedBlocks encoded, Map<String, String> lookupTable)
+			throws IllegalArgumentException {
+		if (encoded == null) {
+			throw new IllegalArgumentException("Encoded blocks cannot be null");
+		}
+		return new BlockCodec(encoded.getBlockSize()).decode(encoded, lookupTable);
+	}
+
+	/**
+	 * Encodes an input string into packed bits, either as a single stream like
+	 * encode_bits() or as 4 interleaved streams (see InterleavedStreams).
+	 * 
+	 * @param encodingMap The Huffman encoding map.
+	 * @param inputString The input string to be encoded.
+	 * @param streams     1 or 4.
+	 * @return The encoded bits.
+	 * @throws IllegalArgumentException If a parameter is null or not valid, or a
+	 *                                  character has no code.
+	 */
+	public static EncodedBits encode_bits(Map<String, String> encodingMap, String inputString, int streams)
+			throws IllegalArgumentException {
+		if (check_streams(streams) == 1) {
+			return encode_bits(encodingMap, inputString);
+		}
+		if (encodingMap == null || inputString == null) {
+			throw new IllegalArgumentException("Parameters cannot be null");
+		}
+		return InterleavedStreams.encode(CharEncoder.of(encodingMap), inputString);
+	}
+
+	/**
+	 * Helper function that checks the number of streams of the interleaved
+	 * encoding modes.
+	 * 
+	 * @param streams Number of streams asked for.
+	 * @return The same number.
+	 * @throws IllegalArgumentException If it is neither 1 nor 4.
+	 */
+	private static int check_streams(int streams) throws IllegalArgumentException {
+		if (streams != 1 && streams != InterleavedStreams.STREAMS) {
+			throw new IllegalArgumentException("Streams must be 1 or " + InterleavedStreams.STREAMS);
+		}
+		return streams;
+	}
+
 	/**
 	 * Receives the frequency distribution map, the Huffman Prefix Code HashTable,
 	 * the input string, and the output string, and prints the results to the screen
@@ -346,22 +903,23 @@ public class HuffmanCoding {
 			String output) {
 		/*
 		 * To get the bytes of the input string, we just get the bytes of the original
-		 * string with string.getBytes().length
+		 * string in UTF-8, the encoding load_data() reads it with, rather than in
+		 * whatever the platform default happens to be
 		 */
-		int inputBytes = inputData.getBytes().length;
+		int inputBytes = inputData.getBytes(StandardCharsets.UTF_8).length;
 
 		/**
 		 * For the bytes of the encoded one, it's not so easy.
 		 * 
-		 * Here we have to get the bytes the same way we got the bytes for the original
-		 * one but we divide it by 8, because 1 byte = 8 bits and our huffman code is in
-		 * bits (0,1), not bytes.
+		 * Here we count the characters of the encoded string, one per bit, and divide
+		 * it by 8, because 1 byte = 8 bits and our huffman code is in bits (0,1), not
+		 * bytes.
 		 * 
 		 * This is because we want to calculate how many bytes we saved by counting how
 		 * many bits we generated with the encoding
 		 */
 		DecimalFormat d = new DecimalFormat("##.##");
-		double outputBytes = Math.ceil((float) output.getBytes().length / 8);
+		double outputBytes = Math.ceil((float) output.length() / 8);
 
 		/**
 		 * to calculate how much space we saved we just take the percentage. the number
@@ -431,32 +989,144 @@ public class HuffmanCoding {
 	 * 
 	 * Used for output Purposes
 	 * 
+	 * The encoded string is packed into bits and decoded with a DecodeTable, which
+	 * resolves a whole prefix code with a single lookup instead of searching the
+	 * lookup table for every substring. Decoding stops at the first character that
+	 * is not a bit or at an incomplete code at the end.
+	 * 
 	 * @param output      - Encoded String
 	 * @param lookupTable
 	 * @return The decoded String, this should be the original input string parsed
 	 *         from the input file
 	 */
 	public static String decodeHuff(String output, Map<String, String> lookupTable) {
-		String result = "";
-		int start = 0;
-		List<String> prefixCodes = lookupTable.getValues();
-		List<String> symbols = lookupTable.getKeys();
+		String[] names = new String[lookupTable.size()];
+		DecodeTable table = decode_tableHelper(lookupTable, names);
 
-		/**
-		 * Loop through output until a prefix code is found on map and adding the symbol
-		 * that the code that represents it to result
-		 */
-		for (int i = 0; i <= output.length(); i++) {
+		int bitLength = 0;
+		while (bitLength < output.length() && (output.charAt(bitLength) == '0' || output.charAt(bitLength) == '1'))
+			bitLength++;
+		EncodedBits bits = EncodedBits.fromBitString(output, bitLength);
 
-			String searched = output.substring(start, i);
+		/* Every symbol takes at least minLength bits, so this is enough room for all of them */
+		StringBuilder result = new StringBuilder(bitLength / Math.max(1, table.getMinLength()) + 1);
+		BitReader in = new BitReader(bits);
+		while (in.hasMore()) {
+			long start = in.position();
+			int symbol = table.decodeSymbol(in);
+			if (symbol < 0 || in.position() > bitLength) { // Not a complete code
+				in.position(start);
+				break;
+			}
+			result.append(names[symbol]);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Decodes a string generated by encode(encodingMap, inputString, streams) with
+	 * the same number of streams.
+	 * 
+	 * @param output      - Encoded String
+	 * @param lookupTable - Prefix Code Map used to encode it
+	 * @param streams     - 1 or 4
+	 * @return The decoded String
+	 * @throws IllegalArgumentException If the number of streams is not valid or,
+	 *                                  with 4 streams, the string does not decode.
+	 */
+	public static String decodeHuff(String output, Map<String, String> lookupTable, int streams)
+			throws IllegalArgumentException {
+		if (check_streams(streams) == 1) {
+			return decodeHuff(output, lookupTable);
+		}
+		return decode_bits(EncodedBits.fromBitString(output), lookupTable, streams);
+	}
+
+	/**
+	 * Auxiliary Method that decodes the bits generated by encode_bits()
+	 * 
+	 * Uses the same DecodeTable as decodeHuff(), resolving a whole prefix code with
+	 * a single lookup.
+	 * 
+	 * @param encoded     - Encoded bits
+	 * @param lookupTable - Prefix Code Map used to encode the bits
+	 * @return The decoded String
+	 * @throws IllegalArgumentException If either parameter is null or the bits
+	 *                                  contain a code that is not in the table.
+	 */
+	public static String decode_bits(EncodedBits encoded, Map<String, String> lookupTable)
+			throws IllegalArgumentException {
+		if (encoded == null || lookupTable == null) {
+			throw new IllegalArgumentException("Parameters cannot be null");
+		}
+
+		String[] names = new String[lookupTable.size()];
+		DecodeTable table = decode_tableHelper(lookupTable, names);
+
+		long bitLength = encoded.getBitLength();
+		long capacity = bitLength / Math.max(1, table.getMinLength()) + 1;
+		StringBuilder result = new StringBuilder((int) Math.min(capacity, Integer.MAX_VALUE - 8));
+		BitReader in = new BitReader(encoded);
 
-			int index = prefixCodes.firstIndex(searched);
+		/* Appending a char is much cheaper than appending a String of one char */
+		char[] alphabet = new char[names.length];
+		for (int i = 0; i < names.length && alphabet != null; i++) {
+			alphabet[i] = names[i].length() == 1 ? names[i].charAt(0) : 0;
+			if (names[i].length() != 1) {
+				alphabet = null;
+			}
+		}
 
-			if (index >= 0) { // Found it!
-				result = result + symbols.get(index);
-				start = i;
+		while (in.hasMore()) {
+			int symbol = table.decodeSymbol(in);
+			if (symbol < 0 || in.position() > bitLength) {
+				throw new IllegalArgumentException("Encoded bits contain a code that is not in the lookup table");
 			}
+			if (alphabet != null) {
+				result.append(alphabet[symbol]);
+			} else {
+				result.append(names[symbol]);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Decodes the bits generated by encode_bits(encodingMap, inputString, streams)
+	 * with the same number of streams. With 4 streams, one symbol of each stream is
+	 * decoded per step, so the 4 decodes do not wait on each other.
+	 * 
+	 * @param encoded     - Encoded bits
+	 * @param lookupTable - Prefix Code Map used to encode the bits
+	 * @param streams     - 1 or 4
+	 * @return The decoded String
+	 * @throws IllegalArgumentException If a parameter is null or not valid, or the
+	 *                                  bits do not decode.
+	 */
+	public static String decode_bits(EncodedBits encoded, Map<String, String> lookupTable, int streams)
+			throws IllegalArgumentException {
+		if (check_streams(streams) == 1) {
+			return decode_bits(encoded, lookupTable);
+		}
+		if (encoded == null || lookupTable == null) {
+			throw new IllegalArgumentException("Parameters cannot be null");
 		}
-		return result;
+
+		String[] names = new String[lookupTable.size()];
+		DecodeTable table = decode_tableHelper(lookupTable, names);
+		return InterleavedStreams.decode(encoded, table, names);
+	}
+
+	/**
+	 * Helper function that numbers the symbols of a prefix code map and builds a
+	 * DecodeTable for them.
+	 * 
+	 * @param lookupTable Prefix Code Map
+	 * @param names       array with room for every symbol, filled with the symbol
+	 *                    of each number
+	 * @return The table that decodes the prefix codes into symbol numbers
+	 */
+	private static DecodeTable decode_tableHelper(Map<String, String> lookupTable, String[] names) {
+		return DecodeTable.of(lookupTable, names);
 	}
-}
\ No newline at end of file
+}
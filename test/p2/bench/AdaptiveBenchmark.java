@@ -0,0 +1,66 @@
+package p2.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import p2.HuffmanCoding;
+import p2.Codec.AdaptiveHuffmanInputStream;
+import p2.Codec.AdaptiveHuffmanOutputStream;
+import p2.Codec.EncodedBits;
+import p2.DataStructures.Map.Map;
+import p2.bench.Inputs.Distribution;
+
+/**
+ * Compares the single-pass adaptive Huffman streams against the two-pass
+ * pipeline (compute_fd(), huffman_tree(), huffman_code() and encode_bits(),
+ * then decode_bits()) on the same inputs, and prints the size of both outputs.
+ *
+ * Usage: AdaptiveBenchmark [max size, default 4m]
+ */
+public class AdaptiveBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		long maxSize = Bench.parseSize(args.length > 0 ? args[0] : "4m");
+
+		for (Distribution distribution : Distribution.values()) {
+			for (long size = 1 << 10; size <= maxSize && size <= Integer.MAX_VALUE; size <<= 4)
+				compare(distribution.name().toLowerCase() + " " + size, Inputs.generate((int) size, distribution, size));
+		}
+	}
+
+	private static void compare(String name, String input) throws Exception {
+		byte[] bytes = input.getBytes(StandardCharsets.ISO_8859_1);
+		int iterations = (int) Math.max(1, Math.min(Bench.DEFAULT_ITERATIONS, (64L << 20) / bytes.length));
+		int warmup = Math.max(1, iterations / 2);
+
+		Map<String, String> codes = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(HuffmanCoding.compute_fd(input)));
+		EncodedBits twoPass = HuffmanCoding.encode_bits(codes, input);
+		byte[] adaptive = encode(bytes);
+		if (!Arrays.equals(decode(adaptive), bytes))
+			throw new IllegalStateException("Adaptive streams did not round trip " + name);
+		System.out.printf("%s: two-pass %d bytes, adaptive %d bytes%n", name, twoPass.getByteLength(), adaptive.length);
+
+		Bench.run(name + " two-pass encode", bytes.length, warmup, iterations, () -> HuffmanCoding
+				.encode_bits(HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(HuffmanCoding.compute_fd(input))), input));
+		Bench.run(name + " adaptive encode", bytes.length, warmup, iterations, () -> encode(bytes));
+		Bench.run(name + " two-pass decode", bytes.length, warmup, iterations, () -> HuffmanCoding.decode_bits(twoPass, codes));
+		Bench.run(name + " adaptive decode", bytes.length, warmup, iterations, () -> decode(adaptive));
+	}
+
+	private static byte[] encode(byte[] bytes) throws Exception {
+		ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length / 2);
+		try (AdaptiveHuffmanOutputStream out = new AdaptiveHuffmanOutputStream(result)) {
+			out.write(bytes);
+		}
+		return result.toByteArray();
+	}
+
+	private static byte[] decode(byte[] encoded) throws Exception {
+		try (InputStream in = new AdaptiveHuffmanInputStream(new ByteArrayInputStream(encoded))) {
+			return in.readAllBytes();
+		}
+	}
+}
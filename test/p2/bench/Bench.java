@@ -0,0 +1,119 @@
+package p2.bench;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Minimal benchmark harness
+ * 
+ * Runs an operation a few times to let the JIT compile it, then times a number
+ * of measured runs and prints the average time per run, the throughput and how
+ * much memory each run allocated (the same figures JMH reports with -prof gc).
+ * 
+ * Allocation is measured for the calling thread only, so operations that hand
+ * their work to other threads report just their own share of it.
+ */
+public class Bench {
+
+	/** Operation to time, returns something so the JIT cannot discard the work */
+	@FunctionalInterface
+	public interface Operation {
+		Object run() throws Exception;
+	}
+
+	/** Measurements of one benchmark */
+	public static class Result {
+		public final String name;
+		public final double nanosPerOp;
+		public final double opsPerSecond;
+		public final double bytesPerSecond;
+		public final double allocatedPerOp;
+
+		Result(String name, double nanosPerOp, long bytes, double allocatedPerOp) {
+			this.name = name;
+			this.nanosPerOp = nanosPerOp;
+			this.opsPerSecond = 1e9 / nanosPerOp;
+			this.bytesPerSecond = bytes * opsPerSecond;
+			this.allocatedPerOp = allocatedPerOp;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-48s %12.4f ms/op %12.1f ops/s %10.2f MB/s %14.0f B/op %10.1f MB/s alloc", name,
+					nanosPerOp / 1e6, opsPerSecond, bytesPerSecond / 1e6, allocatedPerOp,
+					allocatedPerOp * opsPerSecond / 1e6);
+		}
+	}
+
+	public static final int DEFAULT_WARMUP = 5;
+	public static final int DEFAULT_ITERATIONS = 10;
+
+	/* Results are accumulated here so no run can be optimized away */
+	private static int sink;
+
+	/**
+	 * Times an operation and prints a line with the results.
+	 * 
+	 * @param name       label of the benchmark
+	 * @param bytes      bytes processed by one run, used for the throughput
+	 * @param warmup     runs that are not measured
+	 * @param iterations measured runs
+	 * @param operation  operation to time
+	 * @return The measurements
+	 */
+	public static Result run(String name, long bytes, int warmup, int iterations, Operation operation)
+			throws Exception {
+		for (int i = 0; i < warmup; i++)
+			consume(operation.run());
+
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			consume(operation.run());
+		double nanos = (double) (System.nanoTime() - start) / iterations;
+		allocated = allocatedBytes() - allocated;
+
+		Result result = new Result(name, nanos, bytes, allocated < 0 ? Double.NaN : (double) allocated / iterations);
+		System.out.println(result);
+		return result;
+	}
+
+	public static Result run(String name, long bytes, Operation operation) throws Exception {
+		return run(name, bytes, DEFAULT_WARMUP, DEFAULT_ITERATIONS, operation);
+	}
+
+	/* Bytes allocated so far by this thread, or -1 if the JVM cannot tell */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+
+	private static void consume(Object result) {
+		sink += result == null ? 0 : System.identityHashCode(result);
+	}
+
+	public static int sink() {
+		return sink;
+	}
+
+	/**
+	 * Parses sizes such as 4096, 64k, 16m or 1g.
+	 * 
+	 * @param size size with an optional k, m or g suffix (powers of 1024)
+	 * @return The size in bytes
+	 */
+	public static long parseSize(String size) {
+		String value = size.trim().toLowerCase();
+		long unit = 1;
+		if (value.endsWith("k"))
+			unit = 1L << 10;
+		else if (value.endsWith("m"))
+			unit = 1L << 20;
+		else if (value.endsWith("g"))
+			unit = 1L << 30;
+		if (unit > 1)
+			value = value.substring(0, value.length() - 1);
+		return Long.parseLong(value) * unit;
+	}
+}
@@ -0,0 +1,46 @@
+package p2.bench;
+
+import java.util.concurrent.ForkJoinPool;
+
+import p2.HuffmanCoding;
+import p2.Codec.BlockCodec;
+import p2.Codec.EncodedBits;
+import p2.Codec.EncodedBlocks;
+import p2.DataStructures.Map.Map;
+import p2.bench.Inputs.Distribution;
+
+/**
+ * Measures how BlockCodec scales: encodes and decodes the same Zipfian input in
+ * 1 MB blocks with pools of 1, 2, 4... threads up to the number of cores (at
+ * least 4), next to encode_bits() and decode_bits() on a single stream.
+ *
+ * Usage: BlockBenchmark [input size, default 64m] [block size, default 1m]
+ */
+public class BlockBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int size = (int) Bench.parseSize(args.length > 0 ? args[0] : "64m");
+		int blockSize = (int) Bench.parseSize(args.length > 1 ? args[1] : "1m");
+		String input = Inputs.generate(size, Distribution.ZIPFIAN, size);
+		Map<String, String> codes = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(HuffmanCoding.compute_fd(input)));
+		int iterations = (int) Math.max(1, Math.min(Bench.DEFAULT_ITERATIONS, (256L << 20) / size));
+		int warmup = Math.max(1, iterations / 2);
+
+		EncodedBits single = HuffmanCoding.encode_bits(codes, input);
+		Bench.run("encode_bits", size, warmup, iterations, () -> HuffmanCoding.encode_bits(codes, input));
+		Bench.run("decode_bits", size, warmup, iterations, () -> HuffmanCoding.decode_bits(single, codes));
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= Math.max(4, cores); threads *= 2) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			BlockCodec codec = new BlockCodec(pool, blockSize);
+			EncodedBlocks blocks = codec.encode(codes, input);
+			if (!codec.decode(blocks, codes).equals(input))
+				throw new IllegalStateException("Blocks did not round trip");
+
+			Bench.run(threads + " threads encode", size, warmup, iterations, () -> codec.encode(codes, input));
+			Bench.run(threads + " threads decode", size, warmup, iterations, () -> codec.decode(blocks, codes));
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package p2.bench;
+
+import java.util.Random;
+
+import p2.HuffmanCoding;
+import p2.Codec.CodeTableCache;
+import p2.DataStructures.Map.Map;
+
+/**
+ * Measures CodeTableCache on a stream of short, similar messages: a few
+ * hundred base messages, each one sent many times with a couple of characters
+ * overwritten. Compares compute_fd() + cache + encode_bits() per message against
+ * building the tree and the codes every time, and prints the hit rate.
+ *
+ * Usage: CacheBenchmark [messages, default 100k] [message length, default 100]
+ */
+public class CacheBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? (int) Bench.parseSize(args[0]) : 100_000;
+		int length = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+		Random random = new Random(14);
+		String[] bases = new String[256];
+		for (int i = 0; i < bases.length; i++)
+			bases[i] = Inputs.generate(length, Inputs.Distribution.ZIPFIAN, i);
+
+		String[] messages = new String[count];
+		for (int i = 0; i < count; i++) {
+			char[] message = bases[random.nextInt(bases.length)].toCharArray();
+			/*
+			 * Copy a couple of characters over others, which changes the counts a little.
+			 * A character seen only once is never overwritten: a message with a symbol the
+			 * cached codes do not have cannot share them anyway.
+			 */
+			for (int copy = 0; copy < 2; copy++) {
+				int target = random.nextInt(length);
+				if (new String(message).indexOf(message[target], target + 1) >= 0
+						|| new String(message).lastIndexOf(message[target], target - 1) >= 0)
+					message[target] = message[random.nextInt(length)];
+			}
+			messages[i] = new String(message);
+		}
+		long bytes = (long) count * length;
+
+		CodeTableCache cache = new CodeTableCache();
+		Bench.run("cached " + count + " x " + length, bytes, 2, 5, () -> cached(cache, messages));
+		System.out.printf("hits %d, misses %d, evictions %d, hit rate %.3f%n", cache.hits(), cache.misses(),
+				cache.evictions(), cache.hitRate());
+		Bench.run("uncached " + count + " x " + length, bytes, 2, 5, () -> uncached(messages));
+
+		long cachedBits = cached(cache, messages), bits = uncached(messages);
+		System.out.printf("encoded bits: cached %d, uncached %d (%+.2f%%)%n", cachedBits, bits,
+				100.0 * (cachedBits - bits) / bits);
+	}
+
+	private static long cached(CodeTableCache cache, String[] messages) {
+		long bits = 0;
+		for (String message : messages) {
+			Map<String, String> codes = cache.get(HuffmanCoding.compute_fd(message));
+			bits += HuffmanCoding.encode_bits(codes, message).getBitLength();
+		}
+		return bits;
+	}
+
+	private static long uncached(String[] messages) {
+		long bits = 0;
+		for (String message : messages) {
+			Map<String, String> codes = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(HuffmanCoding.compute_fd(message)));
+			bits += HuffmanCoding.encode_bits(codes, message).getBitLength();
+		}
+		return bits;
+	}
+}
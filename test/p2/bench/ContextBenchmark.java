@@ -0,0 +1,52 @@
+package p2.bench;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import p2.HuffmanCoding;
+
+/**
+ * Compares order-0 coding (compress_bytes(), one table for the whole input)
+ * against order-1 coding (compress_order1(), a table per preceding byte) on the
+ * inputData files and a generated server log, printing the size of both outputs
+ * and timing both ways.
+ *
+ * Usage: ContextBenchmark [log size, default 16m]
+ */
+public class ContextBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		long maxSize = Bench.parseSize(args.length > 0 ? args[0] : "16m");
+
+		for (File file : new File("inputData").listFiles()) {
+			byte[] input = Files.readAllBytes(file.toPath());
+			if (input.length > 0)
+				compare(file.getName(), input);
+		}
+		for (long size = 1 << 16; size <= maxSize && size <= Integer.MAX_VALUE / 2; size <<= 4)
+			compare("log " + size, TokenBenchmark.log((int) size, size).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void compare(String name, byte[] input) throws Exception {
+		int iterations = (int) Math.max(1, Math.min(Bench.DEFAULT_ITERATIONS, (64L << 20) / input.length));
+		int warmup = Math.max(1, iterations / 2);
+
+		byte[] order0 = HuffmanCoding.compress_bytes(input);
+		byte[] order1 = HuffmanCoding.compress_order1(input);
+		if (!Arrays.equals(HuffmanCoding.decompress_order1(order1), input))
+			throw new IllegalStateException("Order-1 did not round trip " + name);
+		System.out.printf("%s: %d bytes, order-0 %d (%.1f%%), order-1 %d (%.1f%%)%n", name, input.length,
+				order0.length, 100.0 * order0.length / input.length, order1.length,
+				100.0 * order1.length / input.length);
+
+		Bench.run(name + " compress_bytes", input.length, warmup, iterations, () -> HuffmanCoding.compress_bytes(input));
+		Bench.run(name + " compress_order1", input.length, warmup, iterations,
+				() -> HuffmanCoding.compress_order1(input));
+		Bench.run(name + " decompress_bytes", input.length, warmup, iterations,
+				() -> HuffmanCoding.decompress_bytes(order0));
+		Bench.run(name + " decompress_order1", input.length, warmup, iterations,
+				() -> HuffmanCoding.decompress_order1(order1));
+	}
+}
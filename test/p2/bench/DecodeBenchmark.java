@@ -0,0 +1,54 @@
+package p2.bench;
+
+import p2.HuffmanCoding;
+import p2.DataStructures.List.List;
+import p2.DataStructures.Map.Map;
+
+/**
+ * Compares the table driven decodeHuff() against the previous decoder, which
+ * searched the lookup table for every substring of the encoded string.
+ * 
+ * Runs over inputData/stringData6.txt and synthetic inputs of increasing size.
+ * The previous decoder is quadratic, so it only runs on the smaller inputs.
+ */
+public class DecodeBenchmark {
+
+	private static final int LEGACY_LIMIT = 1 << 16;
+
+	public static void main(String[] args) throws Exception {
+		decode("stringData6.txt", HuffmanCoding.load_data("stringData6.txt"));
+
+		for (int size = 1 << 12; size <= 1 << 24; size <<= 2)
+			decode("synthetic " + size, Inputs.skewed(size, 42));
+	}
+
+	private static void decode(String name, String input) throws Exception {
+		Map<String, String> codes = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(HuffmanCoding.compute_fd(input)));
+		String output = HuffmanCoding.encode(codes, input);
+
+		if (!HuffmanCoding.decodeHuff(output, codes).equals(input))
+			throw new IllegalStateException("decodeHuff did not round trip " + name);
+
+		Bench.run(name + " decodeHuff", input.length(), () -> HuffmanCoding.decodeHuff(output, codes));
+		if (input.length() <= LEGACY_LIMIT)
+			Bench.run(name + " substring search", input.length(), () -> legacyDecodeHuff(output, codes));
+	}
+
+	/* The decoder decodeHuff() used before it was table driven */
+	static String legacyDecodeHuff(String output, Map<String, String> lookupTable) {
+		String result = "";
+		int start = 0;
+		List<String> prefixCodes = lookupTable.getValues();
+		List<String> symbols = lookupTable.getKeys();
+
+		for (int i = 0; i <= output.length(); i++) {
+			String searched = output.substring(start, i);
+			int index = prefixCodes.firstIndex(searched);
+			if (index >= 0) {
+				result = result + symbols.get(index);
+				start = i;
+			}
+		}
+		return result;
+	}
+}
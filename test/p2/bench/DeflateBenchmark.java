@@ -0,0 +1,88 @@
+package p2.bench;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import p2.HuffmanCoding;
+
+/**
+ * Compares compress_lz77() against java.util.zip.Deflater at the same effort
+ * levels (1, 6 and 9, with DEFLATE's 32 KB window) on the inputData files and
+ * a generated server log, printing the size of every output and timing both
+ * ways, plus compress_bytes() as the Huffman only baseline.
+ *
+ * Usage: DeflateBenchmark [log size, default 16m]
+ */
+public class DeflateBenchmark {
+
+	private static final int[] LEVELS = { 1, 6, 9 };
+
+	public static void main(String[] args) throws Exception {
+		long maxSize = Bench.parseSize(args.length > 0 ? args[0] : "16m");
+
+		for (File file : new File("inputData").listFiles()) {
+			byte[] input = Files.readAllBytes(file.toPath());
+			if (input.length > 0)
+				compare(file.getName(), input);
+		}
+		for (long size = 1 << 16; size <= maxSize && size <= Integer.MAX_VALUE / 2; size <<= 4)
+			compare("log " + size, TokenBenchmark.log((int) size, size).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void compare(String name, byte[] input) throws Exception {
+		int iterations = (int) Math.max(1, Math.min(Bench.DEFAULT_ITERATIONS, (64L << 20) / input.length));
+		int warmup = Math.max(1, iterations / 2);
+
+		byte[] huffman = HuffmanCoding.compress_bytes(input);
+		System.out.printf("%s: %d bytes, compress_bytes %d (%.1f%%)%n", name, input.length, huffman.length,
+				100.0 * huffman.length / input.length);
+		for (int level : LEVELS) {
+			byte[] lz77 = HuffmanCoding.compress_lz77(input, 1 << 15, level);
+			byte[] deflated = deflate(input, level);
+			if (!Arrays.equals(HuffmanCoding.decompress_lz77(lz77), input))
+				throw new IllegalStateException("LZ77 did not round trip " + name);
+			System.out.printf("%s level %d: compress_lz77 %d (%.1f%%), Deflater %d (%.1f%%)%n", name, level,
+					lz77.length, 100.0 * lz77.length / input.length, deflated.length,
+					100.0 * deflated.length / input.length);
+
+			Bench.run(name + " compress_lz77 " + level, input.length, warmup, iterations,
+					() -> HuffmanCoding.compress_lz77(input, 1 << 15, level));
+			Bench.run(name + " Deflater " + level, input.length, warmup, iterations, () -> deflate(input, level));
+			Bench.run(name + " decompress_lz77 " + level, input.length, warmup, iterations,
+					() -> HuffmanCoding.decompress_lz77(lz77));
+			Bench.run(name + " Inflater " + level, input.length, warmup, iterations,
+					() -> inflate(deflated, input.length));
+		}
+	}
+
+	private static byte[] deflate(byte[] input, int level) {
+		Deflater deflater = new Deflater(level);
+		deflater.setInput(input);
+		deflater.finish();
+		byte[] buffer = new byte[input.length + input.length / 1000 + 64];
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == buffer.length)
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			length += deflater.deflate(buffer, length, buffer.length - length);
+		}
+		deflater.end();
+		return Arrays.copyOf(buffer, length);
+	}
+
+	private static byte[] inflate(byte[] deflated, int length) throws DataFormatException {
+		Inflater inflater = new Inflater();
+		inflater.setInput(deflated);
+		byte[] result = new byte[length];
+		int read = 0;
+		while (read < length && !inflater.finished())
+			read += inflater.inflate(result, read, length - read);
+		inflater.end();
+		return result;
+	}
+}
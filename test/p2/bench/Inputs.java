@@ -0,0 +1,90 @@
+package p2.bench;
+
+import java.util.Random;
+
+/**
+ * Generated benchmark inputs
+ * 
+ * All inputs use letters and digits only, which are the characters compute_fd()
+ * keeps as their own symbols, so every stage of the pipeline can run on them.
+ */
+public class Inputs {
+
+	public static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+	/** Symbol distributions of the generated inputs */
+	public enum Distribution {
+		/** Every symbol equally likely */
+		UNIFORM,
+		/** Probability of the symbol with rank k proportional to 1/k */
+		ZIPFIAN,
+		/** The same symbol over and over */
+		SINGLE
+	}
+
+	/**
+	 * Generates an input of the given size and distribution. The same arguments
+	 * always give the same input.
+	 * 
+	 * @param size         number of characters
+	 * @param distribution how often each symbol shows up
+	 * @param seed         seed of the random generator
+	 * @return The generated input
+	 */
+	public static String generate(int size, Distribution distribution, long seed) {
+		Random random = new Random(seed);
+		char[] result = new char[size];
+		switch (distribution) {
+		case UNIFORM:
+			for (int i = 0; i < size; i++)
+				result[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+			break;
+		case ZIPFIAN:
+			double[] cumulative = zipfCumulative(ALPHABET.length());
+			for (int i = 0; i < size; i++)
+				result[i] = ALPHABET.charAt(search(cumulative, random.nextDouble()));
+			break;
+		case SINGLE:
+			java.util.Arrays.fill(result, ALPHABET.charAt(0));
+			break;
+		}
+		return new String(result);
+	}
+
+	/**
+	 * Letters and digits with a skewed (cubic) distribution, so codes have
+	 * different lengths.
+	 */
+	public static String skewed(int size, long seed) {
+		Random random = new Random(seed);
+		char[] result = new char[size];
+		for (int i = 0; i < size; i++)
+			result[i] = ALPHABET.charAt((int) (ALPHABET.length() * Math.pow(random.nextDouble(), 3)));
+		return new String(result);
+	}
+
+	private static double[] zipfCumulative(int symbols) {
+		double[] cumulative = new double[symbols];
+		double sum = 0;
+		for (int k = 1; k <= symbols; k++) {
+			sum += 1.0 / k;
+			cumulative[k - 1] = sum;
+		}
+		for (int k = 0; k < symbols; k++)
+			cumulative[k] /= sum;
+		return cumulative;
+	}
+
+	/* Index of the first cumulative probability above value */
+	private static int search(double[] cumulative, double value) {
+		int low = 0, high = cumulative.length - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (cumulative[middle] <= value)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,49 @@
+package p2.bench;
+
+import p2.HuffmanCoding;
+import p2.Codec.EncodedBits;
+import p2.DataStructures.Map.Map;
+import p2.bench.Inputs.Distribution;
+
+/**
+ * Compares decode_bits() on a single stream against 4 interleaved streams
+ * (InterleavedStreams) for the same inputs and codes, and prints how many
+ * bytes the stream header and padding add.
+ *
+ * Usage: InterleavedBenchmark [max size, default 16m]
+ */
+public class InterleavedBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		long maxSize = Bench.parseSize(args.length > 0 ? args[0] : "16m");
+
+		for (long size = 1 << 12; size <= maxSize && size <= Integer.MAX_VALUE; size <<= 4)
+			compare("skewed " + size, Inputs.skewed((int) size, size));
+		for (Distribution distribution : Distribution.values()) {
+			if (maxSize >= 1 << 20)
+				compare(distribution.name().toLowerCase() + " " + (1 << 20), Inputs.generate(1 << 20, distribution, 19));
+		}
+	}
+
+	private static void compare(String name, String input) throws Exception {
+		int iterations = (int) Math.max(1, Math.min(Bench.DEFAULT_ITERATIONS, (64L << 20) / input.length()));
+		int warmup = Math.max(1, iterations / 2);
+
+		Map<String, String> codes = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(HuffmanCoding.compute_fd(input)));
+		EncodedBits single = HuffmanCoding.encode_bits(codes, input, 1);
+		EncodedBits interleaved = HuffmanCoding.encode_bits(codes, input, 4);
+		if (!HuffmanCoding.decode_bits(interleaved, codes, 4).equals(input))
+			throw new IllegalStateException("Interleaved streams did not round trip " + name);
+		System.out.printf("%s: single %d bytes, interleaved %d bytes%n", name, single.getByteLength(),
+				interleaved.getByteLength());
+
+		Bench.run(name + " 1 stream decode", input.length(), warmup, iterations,
+				() -> HuffmanCoding.decode_bits(single, codes, 1));
+		Bench.run(name + " 4 streams decode", input.length(), warmup, iterations,
+				() -> HuffmanCoding.decode_bits(interleaved, codes, 4));
+		Bench.run(name + " 1 stream encode", input.length(), warmup, iterations,
+				() -> HuffmanCoding.encode_bits(codes, input, 1));
+		Bench.run(name + " 4 streams encode", input.length(), warmup, iterations,
+				() -> HuffmanCoding.encode_bits(codes, input, 4));
+	}
+}
@@ -0,0 +1,135 @@
+package p2.bench;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+import p2.HuffmanCoding;
+import p2.Codec.CharEncoder;
+import p2.Codec.FlatHuffmanTree;
+import p2.DataStructures.Map.HashTableOA;
+import p2.DataStructures.Map.HashTableSC;
+import p2.DataStructures.Map.Map;
+import p2.DataStructures.Tree.BTNode;
+import p2.bench.Inputs.Distribution;
+
+/**
+ * Benchmarks every stage of the pipeline: compute_fd(), huffman_tree(),
+ * huffman_code(), encode(), encode_bits() and decodeHuff(), encoding through a
+ * prebuilt CharEncoder, the same tree and codes built with
+ * FlatHuffmanTree, compress_bytes() and decompress_bytes() on the UTF-8 bytes of
+ * the input, the run-length stage before compute_fd() and its inverse, plus
+ * get/put on HashTableSC and HashTableOA.
+ * 
+ * Runs over every file in inputData/ and over generated inputs from 1 KB up to
+ * a maximum size (16x per step) with uniform, Zipfian and single-symbol
+ * distributions. Each line reports latency (ms/op), throughput (ops/s and MB/s
+ * of input) and allocation (B/op and MB/s).
+ * 
+ * Usage: PipelineBenchmark [max size, default 4m] [stage filter]
+ * 
+ * e.g. PipelineBenchmark 1g encode (needs a heap several times the size)
+ */
+public class PipelineBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		long maxSize = Bench.parseSize(args.length > 0 ? args[0] : "4m");
+		String filter = args.length > 1 ? args[1] : "";
+
+		for (File file : new File("inputData").listFiles()) {
+			String input = HuffmanCoding.load_data(file.getName());
+			if (!input.isEmpty())
+				pipeline(file.getName(), input, filter);
+		}
+
+		for (Distribution distribution : Distribution.values()) {
+			for (long size = 1 << 10; size <= maxSize && size <= Integer.MAX_VALUE; size <<= 4) {
+				String input = Inputs.generate((int) size, distribution, size);
+				pipeline(distribution.name().toLowerCase() + " " + size, input, filter);
+			}
+		}
+
+		if ("hashtable".contains(filter))
+			hashTable(1 << 16);
+	}
+
+	/* Runs every stage on the input, each one on the output of the one before */
+	private static void pipeline(String name, String input, String filter) throws Exception {
+		int bytes = input.length();
+		/* Fewer runs for big inputs so the whole suite still finishes */
+		int iterations = (int) Math.max(1, Math.min(Bench.DEFAULT_ITERATIONS, (64L << 20) / Math.max(1, bytes)));
+		int warmup = Math.max(1, iterations / 2);
+
+		Map<String, Integer> fD = HuffmanCoding.compute_fd(input);
+		BTNode<Integer, String> root = HuffmanCoding.huffman_tree(fD);
+		Map<String, String> codes = HuffmanCoding.huffman_code(root);
+		FlatHuffmanTree flat = FlatHuffmanTree.of(fD);
+		CharEncoder encoder = CharEncoder.of(codes);
+		String output = HuffmanCoding.encode(codes, input);
+		byte[] raw = input.getBytes(StandardCharsets.UTF_8);
+		byte[] compressed = HuffmanCoding.compress_bytes(raw);
+		String runs = HuffmanCoding.run_length_encode(input);
+
+		if ("compute_fd".contains(filter))
+			Bench.run(name + " compute_fd", bytes, warmup, iterations, () -> HuffmanCoding.compute_fd(input));
+		if ("huffman_tree".contains(filter))
+			Bench.run(name + " huffman_tree", bytes, warmup, iterations, () -> HuffmanCoding.huffman_tree(fD));
+		if ("huffman_code".contains(filter))
+			Bench.run(name + " huffman_code", bytes, warmup, iterations, () -> HuffmanCoding.huffman_code(root));
+		if ("huffman_code_table".contains(filter))
+			Bench.run(name + " huffman_code_table", bytes, warmup, iterations, () -> HuffmanCoding.huffman_code_table(root));
+		if ("flat_tree".contains(filter))
+			Bench.run(name + " flat_tree", bytes, warmup, iterations, () -> FlatHuffmanTree.of(fD));
+		if ("flat_code".contains(filter))
+			Bench.run(name + " flat_code", bytes, warmup, iterations, () -> flat.codes());
+		if ("encode".contains(filter))
+			Bench.run(name + " encode", bytes, warmup, iterations, () -> HuffmanCoding.encode(codes, input));
+		/* compute_fd() puts spaces and punctuation in buckets, which have no code to pack */
+		boolean packable = input.chars().allMatch(encoder::hasCode);
+		if (packable && "encode_bits".contains(filter))
+			Bench.run(name + " encode_bits", bytes, warmup, iterations, () -> HuffmanCoding.encode_bits(codes, input));
+		if (packable && "char_encoder".contains(filter))
+			Bench.run(name + " char_encoder", bytes, warmup, iterations, () -> encoder.encode(input));
+		if ("decodeHuff".contains(filter))
+			Bench.run(name + " decodeHuff", bytes, warmup, iterations, () -> HuffmanCoding.decodeHuff(output, codes));
+		if ("run_length_encode".contains(filter))
+			Bench.run(name + " run_length_encode", bytes, warmup, iterations, () -> HuffmanCoding.run_length_encode(input));
+		if ("run_length_decode".contains(filter))
+			Bench.run(name + " run_length_decode", bytes, warmup, iterations, () -> HuffmanCoding.run_length_decode(runs));
+		if ("compress_bytes".contains(filter))
+			Bench.run(name + " compress_bytes", bytes, warmup, iterations, () -> HuffmanCoding.compress_bytes(raw));
+		if ("decompress_bytes".contains(filter))
+			Bench.run(name + " decompress_bytes", bytes, warmup, iterations,
+					() -> HuffmanCoding.decompress_bytes(compressed));
+	}
+
+	/* put then get of distinct keys, the way compute_fd and huffman_code use the tables */
+	private static void hashTable(int keys) throws Exception {
+		String[] names = new String[keys];
+		for (int i = 0; i < keys; i++)
+			names[i] = Integer.toString(i, 36);
+
+		map("HashTableSC", HashTableSC::new, names);
+		map("HashTableOA", HashTableOA::new, names);
+	}
+
+	private static void map(String name, Supplier<Map<String, Integer>> factory, String[] names) throws Exception {
+		int keys = names.length;
+		Map<String, Integer> table = factory.get();
+		for (int i = 0; i < keys; i++)
+			table.put(names[i], i);
+
+		Bench.run(name + " put " + keys, keys, 2, 5, () -> {
+			Map<String, Integer> result = factory.get();
+			for (int i = 0; i < keys; i++)
+				result.put(names[i], i);
+			return result;
+		});
+		Bench.run(name + " get " + keys, keys, 2, 5, () -> {
+			long sum = 0;
+			for (int i = 0; i < keys; i++)
+				sum += table.get(names[i]);
+			return sum;
+		});
+	}
+}
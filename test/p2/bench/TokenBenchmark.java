@@ -0,0 +1,72 @@
+package p2.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import p2.HuffmanCoding;
+
+/**
+ * Compares coding a server log over its tokens (compress_tokens()) against
+ * coding it over its code points (compress_unicode()) and its bytes
+ * (compress_bytes()), printing the size of each output and timing both ways.
+ *
+ * The log is generated: timestamps, levels, thread names, request paths with
+ * ids and status codes, so it has a few hundred frequent words and a long tail
+ * of numbers, like the real thing.
+ *
+ * Usage: TokenBenchmark [log size, default 16m]
+ */
+public class TokenBenchmark {
+
+	private static final String[] LEVELS = { "INFO ", "INFO ", "INFO ", "DEBUG", "WARN ", "ERROR" };
+	private static final String[] PATHS = { "/api/items", "/api/users", "/api/orders", "/health", "/static/app.js",
+			"/login" };
+	private static final String[] STATUS = { "200 OK", "200 OK", "200 OK", "304 Not Modified", "404 Not Found",
+			"500 Internal Server Error" };
+
+	public static void main(String[] args) throws Exception {
+		long maxSize = Bench.parseSize(args.length > 0 ? args[0] : "16m");
+
+		for (long size = 1 << 16; size <= maxSize && size <= Integer.MAX_VALUE / 2; size <<= 4)
+			compare("log " + size, log((int) size, size));
+	}
+
+	/* A log of about size chars, the same for the same seed */
+	static String log(int size, long seed) {
+		Random random = new Random(seed);
+		StringBuilder log = new StringBuilder(size + 200);
+		long time = 1_700_000_000L;
+		while (log.length() < size) {
+			time += random.nextInt(3);
+			log.append(time).append(' ').append(LEVELS[random.nextInt(LEVELS.length)]).append(" [worker-")
+					.append(random.nextInt(16)).append("] ").append(random.nextBoolean() ? "GET " : "POST ")
+					.append(PATHS[random.nextInt(PATHS.length)]).append('/').append(random.nextInt(100_000))
+					.append(" -> ").append(STATUS[random.nextInt(STATUS.length)]).append(" in ")
+					.append(random.nextInt(2000)).append("ms\n");
+		}
+		return log.toString();
+	}
+
+	private static void compare(String name, String input) throws Exception {
+		int iterations = (int) Math.max(1, Math.min(Bench.DEFAULT_ITERATIONS, (64L << 20) / input.length()));
+		int warmup = Math.max(1, iterations / 2);
+		byte[] raw = input.getBytes(StandardCharsets.UTF_8);
+
+		byte[] tokens = HuffmanCoding.compress_tokens(input);
+		byte[] codePoints = HuffmanCoding.compress_unicode(input);
+		byte[] bytes = HuffmanCoding.compress_bytes(raw);
+		if (!HuffmanCoding.decompress_tokens(tokens).equals(input))
+			throw new IllegalStateException("Tokens did not round trip " + name);
+		System.out.printf("%s: %d bytes, tokens %d (%.1f%%), code points %d (%.1f%%), bytes %d (%.1f%%)%n", name,
+				raw.length, tokens.length, 100.0 * tokens.length / raw.length, codePoints.length,
+				100.0 * codePoints.length / raw.length, bytes.length, 100.0 * bytes.length / raw.length);
+
+		Bench.run(name + " compress_tokens", raw.length, warmup, iterations, () -> HuffmanCoding.compress_tokens(input));
+		Bench.run(name + " decompress_tokens", raw.length, warmup, iterations,
+				() -> HuffmanCoding.decompress_tokens(tokens));
+		Bench.run(name + " compress_unicode", raw.length, warmup, iterations,
+				() -> HuffmanCoding.compress_unicode(input));
+		Bench.run(name + " decompress_unicode", raw.length, warmup, iterations,
+				() -> HuffmanCoding.decompress_unicode(codePoints));
+	}
+}
@@ -8,6 +8,11 @@ import org.junit.Before;
 import org.junit.Test;
 
 import p2.HuffmanCoding;
+import p2.Codec.CodeTableCache;
+import p2.Codec.EncodedBits;
+import p2.Codec.FlatHuffmanTree;
+import p2.Codec.SymbolCodes;
+import p2.DataStructures.Map.HashTableOA;
 import p2.DataStructures.Map.Map;
 import p2.DataStructures.SortedList.SortedLinkedList;
 import p2.DataStructures.SortedList.SortedList;
@@ -55,6 +60,19 @@ public class P2Test1 {
 		assertTrue("Failed to encode correctly input string", check);
 	}
 	
+	@Test
+	public void testBitPackedEncoding() {
+		EncodedBits bits = HuffmanCoding.encode_bits(encodedHuffman, input);
+		byte[] data = bits.getData();
+
+		boolean check = bits.getBitLength() == output.length() && bits.getByteLength() == 3
+				&& data[0] == (byte) 0xFF && data[1] == (byte) 0xA9 && data[2] == (byte) 0x41
+				&& bits.toBitString().equals(output)
+				&& HuffmanCoding.decode_bits(bits, encodedHuffman).equals(input);
+
+		assertTrue("Failed to pack the encoded bits correctly", check);
+	}
+
 	@Test
 	public void testBytes() {
 		inputBytes = input.getBytes().length;
@@ -121,4 +139,82 @@ public class P2Test1 {
 		assertTrue("Failed to encode symbols correctly", check);
 	}
 
+	@Test
+	public void testLengthLimitedCodes() {
+		/* Fibonacci frequencies make the deepest possible Huffman tree */
+		Map<String, Integer> fibonacci = new HashTableOA<String, Integer>();
+		StringBuilder input = new StringBuilder();
+		int a = 1, b = 1;
+		for (char c = 'A'; c < 'A' + 20; c++) {
+			fibonacci.put(String.valueOf(c), a);
+			for (int k = 0; k < a; k++)
+				input.append(c);
+			int next = a + b;
+			a = b;
+			b = next;
+		}
+
+		Map<String, String> codes = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(fibonacci, 8));
+		boolean check = codes.size() == 20;
+		for (String code : codes.getValues()) {
+			if (code.length() > 8)
+				check = false;
+		}
+		String output = HuffmanCoding.encode(codes, input.toString());
+		check = check && HuffmanCoding.decodeHuff(output, codes).equals(input.toString());
+
+		assertTrue("Failed to limit the length of the codes", check);
+	}
+
+	@Test
+	public void testCodeTableCache() {
+		CodeTableCache cache = new CodeTableCache(2);
+		String first = "EEEEIIITTOS";
+		String second = "TOEIEITSEIE"; // another message with the same frequencies
+
+		Map<String, String> codes = cache.get(HuffmanCoding.compute_fd(first));
+		boolean check = cache.get(HuffmanCoding.compute_fd(second)) == codes && cache.hits() == 1 && cache.misses() == 1;
+		check = check && HuffmanCoding.decodeHuff(HuffmanCoding.encode(codes, second), codes).equals(second);
+
+		/* Two other tables push the least recently used one out */
+		cache.get(HuffmanCoding.compute_fd("AAAB"));
+		cache.get(HuffmanCoding.compute_fd("ABCD"));
+		check = check && cache.size() == 2 && cache.evictions() == 1;
+
+		assertTrue("Failed to reuse cached code tables", check);
+	}
+
+	@Test
+	public void testFlatHuffmanTree() {
+		FlatHuffmanTree tree = FlatHuffmanTree.of(fD);
+		Map<String, String> flatCodes = tree.codes();
+		Map<String, String> nodeCodes = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(fD));
+
+		/* Ties may be broken differently, but the encoded size must be the same */
+		int flatBits = 0, nodeBits = 0;
+		for (String symbol : fD.getKeys()) {
+			flatBits += fD.get(symbol) * flatCodes.get(symbol).length();
+			nodeBits += fD.get(symbol) * nodeCodes.get(symbol).length();
+		}
+		boolean check = flatBits == nodeBits && tree.weight(tree.root()) == input.length()
+				&& tree.decode(HuffmanCoding.encode_bits(flatCodes, input)).equals(input);
+
+		assertTrue("Failed to build the flat Huffman tree", check);
+	}
+
+	@Test
+	public void testSymbolCodes() {
+		BTNode<Integer, String> root = HuffmanCoding.huffman_tree(fD);
+		SymbolCodes table = HuffmanCoding.huffman_code_table(root);
+		Map<String, String> expected = new HashTableOA<>();
+		HuffmanCoding.huffman_codeHelper(expected, root, "");
+
+		boolean check = table.size() == expected.size();
+		for (int symbol = 0; check && symbol < table.size(); symbol++)
+			check = table.codeString(symbol).equals(expected.get(table.name(symbol)))
+					&& table.length(symbol) == expected.get(table.name(symbol)).length();
+
+		assertTrue("Failed to generate the code words and lengths", check);
+	}
+
 }
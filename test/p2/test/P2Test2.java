@@ -0,0 +1,407 @@
+package p2.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import p2.HuffmanCoding;
+import p2.Codec.AdaptiveHuffmanInputStream;
+import p2.Codec.AdaptiveHuffmanOutputStream;
+import p2.Codec.BlockCodec;
+import p2.Codec.ByteCodec;
+import p2.Codec.CodePointAlphabet;
+import p2.Codec.EncodedBits;
+import p2.Codec.EncodedBlocks;
+import p2.Codec.MappedCompressor;
+import p2.Codec.StaticCodeTable;
+import p2.Codec.StreamCompressor;
+import p2.DataStructures.Map.Map;
+
+public class P2Test2 {
+
+	Path compressed;
+	Path restored;
+
+	@Before
+	public void setUp() throws Exception {
+		compressed = Files.createTempFile("p2", ".huf");
+		restored = Files.createTempFile("p2", ".txt");
+		compressed.toFile().deleteOnExit();
+		restored.toFile().deleteOnExit();
+	}
+
+	@Test
+	public void testCompressInputFiles() throws Exception {
+		boolean check = true;
+
+		for (File file : new File("inputData").listFiles()) {
+			long size = HuffmanCoding.compress_file(file.getName(), compressed.toString());
+			HuffmanCoding.decompress_file(compressed.toString(), restored.toString());
+
+			if (size < 0 || !Arrays.equals(Files.readAllBytes(file.toPath()), Files.readAllBytes(restored))) {
+				check = false;
+			}
+		}
+
+		assertTrue("Failed to restore compressed input files", check);
+	}
+
+	@Test
+	public void testCompressAcrossChunks() throws Exception {
+		/* Skewed bytes give codes of many lengths, and tiny chunks make codes span them */
+		byte[] data = new byte[100000];
+		Random random = new Random(2023);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (256 * Math.pow(random.nextDouble(), 4));
+		}
+		Path input = Files.createTempFile("p2", ".bin");
+		input.toFile().deleteOnExit();
+		Files.write(input, data);
+
+		StreamCompressor compressor = new StreamCompressor(37);
+		long size = compressor.compress(input, compressed);
+		compressor.decompress(compressed, restored);
+
+		boolean check = size < data.length && Arrays.equals(data, Files.readAllBytes(restored));
+
+		assertTrue("Failed to restore data compressed in small chunks", check);
+	}
+
+	@Test
+	public void testCompressMappedRegions() throws Exception {
+		byte[] data = new byte[100000];
+		Random random = new Random(2024);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (256 * Math.pow(random.nextDouble(), 4));
+		}
+		Path input = Files.createTempFile("p2", ".bin");
+		input.toFile().deleteOnExit();
+		Files.write(input, data);
+
+		/* Small blocks and regions so the file is mapped in several parts */
+		MappedCompressor compressor = new MappedCompressor(ForkJoinPool.commonPool(), 1000, 7500);
+		long size = compressor.compress(input, compressed);
+		compressor.decompress(compressed, restored);
+
+		boolean check = size < data.length && Arrays.equals(data, Files.readAllBytes(restored));
+
+		assertTrue("Failed to restore data compressed from mapped regions", check);
+	}
+
+	@Test
+	public void testAdaptiveStreams() throws Exception {
+		byte[] data = new byte[50000];
+		Random random = new Random(2025);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (256 * Math.pow(random.nextDouble(), 4));
+		}
+
+		/* Flushing in the middle must not change what is read back */
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		try (AdaptiveHuffmanOutputStream out = new AdaptiveHuffmanOutputStream(encoded)) {
+			out.write(data, 0, 20000);
+			out.flush();
+			out.write(data, 20000, data.length - 20000);
+		}
+		byte[] decoded;
+		try (AdaptiveHuffmanInputStream in = new AdaptiveHuffmanInputStream(new ByteArrayInputStream(encoded.toByteArray()))) {
+			decoded = in.readAllBytes();
+		}
+
+		boolean check = encoded.size() < data.length && Arrays.equals(data, decoded);
+
+		assertTrue("Failed to restore data written with adaptive codes", check);
+	}
+
+	@Test
+	public void testStaticCodeTable() throws Exception {
+		StaticCodeTable trained = StaticCodeTable.train(Paths.get("inputData"));
+		trained.save(compressed);
+		StaticCodeTable table = StaticCodeTable.load(compressed);
+
+		/* Any string can be encoded, even with characters the corpus does not have */
+		boolean check = true;
+		for (String message : new String[] { "", "GET /index.html", "\u00BFQu\u00E9 tal? \u2713 \uD83D\uDE00" }) {
+			EncodedBits encoded = table.encode(message);
+			if (!table.decode(encoded).equals(message) || !trained.decode(encoded).equals(message))
+				check = false;
+		}
+		check = check && table.encode("the quick brown fox").getByteLength() < "the quick brown fox".length();
+
+		assertTrue("Failed to encode short messages with the static table", check);
+	}
+
+	@Test
+	public void testInterleavedStreams() {
+		String text = "ABRACADABRAALAKAZAMABRACADABRA";
+		Map<String, String> codes = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(HuffmanCoding.compute_fd(text)));
+
+		/* Lengths that do not split evenly in 4, down to streams with no symbols */
+		boolean check = true;
+		for (int length = 0; length <= text.length(); length++) {
+			String input = text.substring(0, length);
+			EncodedBits bits = HuffmanCoding.encode_bits(codes, input, 4);
+			String output = HuffmanCoding.encode(codes, input, 4);
+			if (!HuffmanCoding.decode_bits(bits, codes, 4).equals(input)
+					|| !HuffmanCoding.decodeHuff(output, codes, 4).equals(input))
+				check = false;
+		}
+
+		assertTrue("Failed to round trip the interleaved streams", check);
+	}
+
+	@Test
+	public void testByteCodec() throws Exception {
+		byte[] data = new byte[30000];
+		Random random = new Random(2020);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (256 * Math.pow(random.nextDouble(), 3));
+		}
+
+		/* Arrays, buffers and streams, in blocks smaller than the data */
+		ByteCodec codec = new ByteCodec(7000);
+		byte[] frame = codec.compress(data);
+		ByteBuffer direct = ByteBuffer.allocateDirect(frame.length).put(frame).flip();
+		ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+		codec.compress(new ByteArrayInputStream(data), blocks);
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		codec.decompress(new ByteArrayInputStream(blocks.toByteArray()), streamed);
+
+		/* A frame has the same layout as a file written by compress_file() */
+		Files.write(compressed, frame);
+		HuffmanCoding.decompress_file(compressed.toString(), restored.toString());
+		boolean check = frame.length < data.length && Arrays.equals(Files.readAllBytes(restored), data)
+				&& Arrays.equals(HuffmanCoding.decompress_bytes(frame), data)
+				&& codec.decompress(direct).equals(ByteBuffer.wrap(data))
+				&& Arrays.equals(streamed.toByteArray(), data)
+				&& Arrays.equals(codec.decompress(codec.compress(new byte[0])), new byte[0]);
+
+		assertTrue("Failed to round trip raw bytes", check);
+	}
+
+	@Test
+	public void testCorruptByteStream() throws Exception {
+		byte[] data = new byte[20000];
+		new Random(2020).nextBytes(data);
+		ByteCodec codec = new ByteCodec(7000);
+		ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+		codec.compress(new ByteArrayInputStream(data), blocks);
+		byte[] stream = blocks.toByteArray();
+
+		/* A frame length far larger than any block, a stream cut in the middle of a frame and one cut in a length */
+		byte[] huge = stream.clone();
+		ByteBuffer.wrap(huge).putInt(0, Integer.MAX_VALUE - 8);
+		byte[][] corrupt = { huge, Arrays.copyOf(stream, stream.length - 100), Arrays.copyOf(stream, 2) };
+		boolean check = true;
+		for (byte[] input : corrupt) {
+			try {
+				codec.decompress(new ByteArrayInputStream(input), new ByteArrayOutputStream());
+				check = false;
+			} catch (IOException e) {
+				// Expected
+			}
+		}
+		assertTrue("Failed to reject a corrupt byte stream", check);
+	}
+
+	@Test
+	public void testUnicodeRoundTrip() {
+		/* Spaces and punctuation, accents, CJK, emoji outside the BMP and a lone surrogate */
+		String[] texts = { "", "a", "\uD83D\uDE00\uD83D\uDE00\uD83D\uDE00",
+				"Caf\u00E9, na\u00EFve? [ok] \u65E5\u672C\u8A9E \uD83D\uDE80\uD840\uDC0B!",
+				"broken \uD800 pair" };
+
+		boolean check = true;
+		for (String text : texts) {
+			if (!HuffmanCoding.decompress_unicode(HuffmanCoding.compress_unicode(text)).equals(text))
+				check = false;
+		}
+
+		/* The emoji is one symbol: its code point gets one code, not two halves */
+		check = check && CodePointAlphabet.of(texts[2]).size() == 1;
+
+		assertTrue("Failed to round trip Unicode text", check);
+	}
+
+	@Test
+	public void testTokenRoundTrip() {
+		StringBuilder log = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			log.append("2024-05-0").append(i % 9 + 1).append(" INFO  [worker-").append(i % 7)
+					.append("] GET /api/items/").append(i * 31 % 1000).append(" 200 OK\n");
+		}
+		String text = log.toString();
+		byte[] tokens = HuffmanCoding.compress_tokens(text);
+
+		/* Repeated words cost one code each, well below coding their characters */
+		boolean check = HuffmanCoding.decompress_tokens(tokens).equals(text)
+				&& tokens.length < HuffmanCoding.compress_unicode(text).length;
+		for (String other : new String[] { "", " ", "word", "\u65E5\u672C \uD83D\uDE00\uD83D\uDE00 end\t\t" }) {
+			if (!HuffmanCoding.decompress_tokens(HuffmanCoding.compress_tokens(other)).equals(other))
+				check = false;
+		}
+
+		assertTrue("Failed to round trip tokens", check);
+	}
+
+	@Test
+	public void testOrder1RoundTrip() {
+		/* After a newline there is always a digit, after 'q' always a 'u' */
+		StringBuilder text = new StringBuilder();
+		Random random = new Random(2023);
+		for (int i = 0; i < 2000; i++) {
+			text.append(random.nextInt(10)).append(" quick quiet queue ").append(random.nextBoolean() ? "a" : "b")
+					.append('\n');
+		}
+		byte[] data = text.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] order1 = HuffmanCoding.compress_order1(data);
+
+		boolean check = Arrays.equals(HuffmanCoding.decompress_order1(order1), data)
+				&& order1.length < HuffmanCoding.compress_bytes(data).length;
+		for (byte[] other : new byte[][] { {}, { 7 }, { 0, 0, 0 }, { -1, 0, -1, 0, 1 } }) {
+			if (!Arrays.equals(HuffmanCoding.decompress_order1(HuffmanCoding.compress_order1(other)), other))
+				check = false;
+		}
+
+		assertTrue("Failed to round trip order-1 codes", check);
+	}
+
+	@Test
+	public void testRunLength() {
+		/* Padded fixed-width records: a few letters, then a long run of one */
+		StringBuilder records = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			records.append("ID").append(i % 10).append("x".repeat(300 + i)).append("AB");
+		}
+		String data = records.toString();
+		String runs = HuffmanCoding.run_length_encode(data);
+		Map<String, String> codes = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(HuffmanCoding.compute_fd(runs)));
+		String output = HuffmanCoding.encode(codes, runs);
+
+		/* Well under one bit per character, and back to the same string */
+		boolean check = output.length() < data.length() / 10
+				&& HuffmanCoding.run_length_decode(HuffmanCoding.decodeHuff(output, codes)).equals(data);
+		for (String other : new String[] { "", "a", "aa", "aaa", "abbbbbbbbbbbbbbbbbbc", "zz".repeat(70000) }) {
+			if (!HuffmanCoding.run_length_decode(HuffmanCoding.run_length_encode(other)).equals(other))
+				check = false;
+		}
+
+		assertTrue("Failed to round trip runs", check);
+	}
+
+	@Test
+	public void testLZ77() {
+		StringBuilder log = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			log.append("2024-05-0").append(i % 9 + 1).append(" INFO  [worker-").append(i % 7)
+					.append("] GET /api/items/").append(i * 31 % 1000).append(" 200 OK\n");
+		}
+		byte[] data = log.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] lz77 = HuffmanCoding.compress_lz77(data);
+
+		/* Repeated lines cost a match each, far below coding every byte */
+		boolean check = Arrays.equals(HuffmanCoding.decompress_lz77(lz77), data)
+				&& lz77.length < HuffmanCoding.compress_bytes(data).length / 3;
+		for (int effort = 1; effort <= 9; effort += 4) {
+			for (int window : new int[] { 256, 1 << 15, 1 << 20 }) {
+				if (!Arrays.equals(HuffmanCoding.decompress_lz77(HuffmanCoding.compress_lz77(data, window, effort)), data))
+					check = false;
+			}
+		}
+		/* Matches that overlap their own output, and no matches at all */
+		byte[] random = new byte[5000];
+		new Random(77).nextBytes(random);
+		for (byte[] other : new byte[][] { {}, { 5 }, new byte[10000], "abcabcabcabcx".getBytes(StandardCharsets.UTF_8),
+				random }) {
+			if (!Arrays.equals(HuffmanCoding.decompress_lz77(HuffmanCoding.compress_lz77(other)), other))
+				check = false;
+		}
+
+		assertTrue("Failed to round trip LZ77", check);
+	}
+
+	@Test
+	public void testBlockCodec() throws Exception {
+		StringBuilder text = new StringBuilder();
+		Random random = new Random(2007);
+		for (int i = 0; i < 5000; i++) {
+			text.append((char) ('a' + (int) (26 * Math.pow(random.nextDouble(), 2))));
+		}
+		String data = text.toString();
+		Map<String, String> codes = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(HuffmanCoding.compute_fd(data)));
+
+		/* Several blocks, the last one shorter, written out and read back */
+		EncodedBlocks blocks = HuffmanCoding.encode_blocks(codes, data, 700);
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		blocks.write(new DataOutputStream(written));
+		EncodedBlocks read = EncodedBlocks.read(new DataInputStream(new ByteArrayInputStream(written.toByteArray())));
+
+		boolean check = blocks.getBlockCount() == 8 && HuffmanCoding.decode_blocks(blocks, codes).equals(data)
+				&& HuffmanCoding.decode_blocks(read, codes).equals(data)
+				&& new BlockCodec(new ForkJoinPool(3), 700).decode(read, codes).equals(data);
+
+		/* A block holds the same bits as its chars encoded on their own */
+		check = check && Arrays.equals(blocks.getData(), read.getData())
+				&& HuffmanCoding.encode_bits(codes, data.substring(700, 1400)).getBitLength() == read.getBitLength(1);
+
+		EncodedBlocks empty = HuffmanCoding.encode_blocks(codes, "", 700);
+		check = check && empty.getBlockCount() == 0 && HuffmanCoding.decode_blocks(empty, codes).isEmpty();
+
+		assertTrue("Failed to round trip blocks", check);
+	}
+
+	@Test
+	public void testCorruptCodeTableHeader() throws Exception {
+		/* A symbol count of -1, a count larger than the alphabet and a gap past the end of it */
+		byte[][] headers = { { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F }, { (byte) 0x81, 0x02 },
+				{ 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 1 }, { 1, (byte) 0x80, 0x02, 1 } };
+		boolean check = true;
+		for (byte[] header : headers) {
+			ByteArrayOutputStream frame = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(frame);
+			out.writeInt(StreamCompressor.MAGIC);
+			out.writeLong(1);
+			out.write(header);
+			out.write(new byte[8]);
+			try {
+				new ByteCodec().decompress(frame.toByteArray());
+				check = false;
+			} catch (IllegalArgumentException e) {
+				check = check && e.getCause() instanceof IOException;
+			}
+		}
+		assertTrue("Failed to reject a corrupt code table header", check);
+	}
+
+	@Test
+	public void testBlockSizeLargerThanInput() {
+		String data = "abcabc";
+		Map<String, String> codes = HuffmanCoding.huffman_code(HuffmanCoding.huffman_tree(HuffmanCoding.compute_fd(data)));
+
+		/* Block sizes that overflow when rounding the number of blocks up */
+		boolean check = true;
+		for (int blockSize : new int[] { 7, Integer.MAX_VALUE - 2, Integer.MAX_VALUE }) {
+			EncodedBlocks blocks = HuffmanCoding.encode_blocks(codes, data, blockSize);
+			check = check && blocks.getBlockCount() == 1 && blocks.getBlockLength(0) == data.length()
+					&& HuffmanCoding.decode_blocks(blocks, codes).equals(data);
+		}
+		assertTrue("Failed to encode one block larger than the input", check);
+	}
+
+}